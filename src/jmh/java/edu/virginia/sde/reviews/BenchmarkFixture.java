@@ -0,0 +1,73 @@
+package edu.virginia.sde.reviews;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Generated SQLite databases for the benchmarks, seeded by {@link BulkLoader}. A fixture of a given size is
+ * built once under build/jmh-fixtures and reused by later runs.
+ * <p>
+ * Courses have IDs 1 to courseCount, and users have IDs 1 to userCount with the username
+ * {@link BulkLoader#usernameFor(int)}. After them come {@link #WRITER_COUNT} writer users with no reviews,
+ * which write benchmarks add reviews for.
+ */
+public final class BenchmarkFixture {
+    public static final int WRITER_COUNT = 1000;
+    public static final String WRITER_PREFIX = "writer";
+
+    private static final Path FIXTURE_DIRECTORY = Path.of("build", "jmh-fixtures");
+
+    private BenchmarkFixture() {
+    }
+
+    /**
+     * Gets the fixture database of the given size, generating it if it does not exist yet
+     * @return The path of the SQLite file
+     */
+    public static Path getOrCreate(int courseCount, int userCount, int reviewCount) throws SQLException, IOException {
+        Files.createDirectories(FIXTURE_DIRECTORY);
+        Path file = FIXTURE_DIRECTORY.resolve(String.format("courses-%d-%d-%d.sqlite", courseCount, userCount, reviewCount));
+        Path complete = FIXTURE_DIRECTORY.resolve(file.getFileName() + ".complete");
+        if (Files.exists(complete)) {
+            return file;
+        }
+        Files.deleteIfExists(file);
+        generate(file, courseCount, userCount, reviewCount);
+        Files.createFile(complete);
+        return file;
+    }
+
+    /**
+     * Deletes the reviews written by the writer users, restoring the fixture after a write benchmark
+     */
+    public static void removeWriterReviews(Path file) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM Reviews WHERE UserID IN " +
+                    "(SELECT ID FROM Users WHERE Username LIKE '" + WRITER_PREFIX + "%')");
+        }
+    }
+
+    private static void generate(Path file, int courseCount, int userCount, int reviewCount) throws SQLException {
+        new BulkLoader(file.toString(), 42).load(courseCount, userCount, reviewCount);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO Users(ID, Username, Password) VALUES(?, ?, ?)")) {
+            connection.setAutoCommit(false);
+            for (int writer = 1; writer <= WRITER_COUNT; writer++) {
+                statement.setInt(1, userCount + writer);
+                statement.setString(2, WRITER_PREFIX + writer);
+                statement.setString(3, "password");
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package edu.virginia.sde.reviews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks the DatabaseDriver calls the screens make most often, against a generated {@link BenchmarkFixture}.
+ * The fixture size is set with the courseCount, userCount, and reviewCount parameters.
+ */
+@State(Scope.Benchmark)
+public class DatabaseDriverBenchmark {
+    @Param("10000")
+    public int courseCount;
+
+    @Param("100000")
+    public int userCount;
+
+    @Param("1000000")
+    public int reviewCount;
+
+    private Path fixture;
+    private DatabaseDriver driver;
+    private ReviewWriteQueue reviewWriteQueue;
+    private final AtomicLong nextWrite = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = BenchmarkFixture.getOrCreate(courseCount, userCount, reviewCount);
+        BenchmarkFixture.removeWriterReviews(fixture);
+        driver = new DatabaseDriver(fixture.toString());
+        driver.connect();
+        driver.createTables();
+        reviewWriteQueue = new ReviewWriteQueue(driver);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        reviewWriteQueue.shutdown();
+        driver.disconnect();
+        BenchmarkFixture.removeWriterReviews(fixture);
+    }
+
+    @Benchmark
+    public List<Course> getAllCoursesWithRatings() throws SQLException {
+        return driver.getAllCoursesWithRatings();
+    }
+
+    @Benchmark
+    public List<Course> getAllCoursesWithRatingsUncached() throws SQLException {
+        driver.getCourseCatalogCache().invalidate();
+        return driver.getAllCoursesWithRatings();
+    }
+
+    @Benchmark
+    public List<Review> getReviewsForCourse(ThreadState state) throws SQLException {
+        return driver.getReviewsForCourse(randomCourseId(state));
+    }
+
+    @Benchmark
+    public ReviewPage getFirstReviewPageForCourse(ThreadState state) throws SQLException {
+        return driver.getReviewsForCourse(randomCourseId(state), null, 50);
+    }
+
+    @Benchmark
+    public OptionalDouble calculateAverageReviewForCourse(ThreadState state) throws SQLException {
+        return driver.calculateAverageReviewForCourse(randomCourseId(state));
+    }
+
+    @Benchmark
+    public RatingSummary getRatingSummary(ThreadState state) throws SQLException {
+        return driver.getRatingSummary(randomCourseId(state));
+    }
+
+    @Benchmark
+    public List<LeaderboardEntry> getTopRatedLeaderboard() throws SQLException {
+        return driver.getLeaderboard(LeaderboardType.TOP_RATED, null, 10);
+    }
+
+    /**
+     * The top ten by plain average without leaderboards, sorting the whole catalogue, for comparison
+     */
+    @Benchmark
+    public List<Course> sortCatalogueByRating() throws SQLException {
+        List<Course> courses = driver.getAllCoursesWithRatings();
+        courses.sort(CourseSort.RATING.getComparator());
+        return courses.subList(0, Math.min(10, courses.size()));
+    }
+
+    @Benchmark
+    public List<String> completeSubject() throws SQLException {
+        return driver.completeSubject("C", 8);
+    }
+
+    @Benchmark
+    public int[] findSimilarTitles() throws SQLException {
+        return driver.getCourseSearchIndex().findSimilarTitles("Sofware Developmnt", 5);
+    }
+
+    @Benchmark
+    public boolean userExists(ThreadState state) throws SQLException {
+        return driver.userExists(randomUsername(state));
+    }
+
+    @Benchmark
+    public Optional<String> getPasswordForUser(ThreadState state) throws SQLException {
+        return driver.getPasswordForUser(new User(randomUsername(state), null));
+    }
+
+    /**
+     * Adds a review from one of the writer users for a course it has not reviewed yet, committing on its own
+     */
+    @Benchmark
+    public Review addReview() throws SQLException {
+        Review review = nextReview();
+        driver.addReview(review);
+        return review;
+    }
+
+    /**
+     * Adds a review through the group-commit queue and waits until it is committed. Run with several
+     * threads (-t) to see concurrent writes share commits.
+     */
+    @Benchmark
+    public Review addReviewQueued() {
+        Review review = nextReview();
+        reviewWriteQueue.addReview(review).join();
+        return review;
+    }
+
+    private Review nextReview() {
+        long write = nextWrite.getAndIncrement();
+        if (write >= (long) BenchmarkFixture.WRITER_COUNT * courseCount) {
+            throw new IllegalStateException("Every writer has reviewed every course");
+        }
+        int userId = userCount + 1 + (int) (write / courseCount);
+        int courseId = 1 + (int) (write % courseCount);
+        return new Review(0, userId, courseId, 1 + (int) (write % 5),
+                new Timestamp(System.currentTimeMillis()), "Benchmark review");
+    }
+
+    private int randomCourseId(ThreadState state) {
+        return 1 + state.random.nextInt(courseCount);
+    }
+
+    private String randomUsername(ThreadState state) {
+        return BulkLoader.usernameFor(1 + state.random.nextInt(userCount));
+    }
+}
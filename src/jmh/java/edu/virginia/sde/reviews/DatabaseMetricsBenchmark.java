@@ -0,0 +1,31 @@
+package edu.virginia.sde.reviews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead the metrics add to every instrumented DatabaseDriver call. Run with -prof gc to check that
+ * recording allocates nothing, and with several threads (-t) to see how the shared counters hold up under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DatabaseMetricsBenchmark {
+    private final OperationMetrics operation = new OperationMetrics("benchmark");
+
+    @Benchmark
+    public void recordCall() {
+        operation.recordSuccess(System.nanoTime(), 10);
+    }
+
+    @Benchmark
+    public long p99() {
+        return operation.getLatencies().getValueAtPercentile(99);
+    }
+}
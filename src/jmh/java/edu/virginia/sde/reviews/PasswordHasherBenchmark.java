@@ -0,0 +1,59 @@
+package edu.virginia.sde.reviews;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time one login spends verifying a password at each candidate work factor, for choosing the
+ * passwordIterations of config.json. Pick the highest count whose verify time fits the login latency target,
+ * and run with several threads (-t) to see how verification holds up when many users log in at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PasswordHasherBenchmark {
+    @Param({"100000", "210000", "310000", "600000"})
+    public int iterations;
+
+    private PasswordHasher hasher;
+    private String stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hasher = new PasswordHasher(iterations);
+        stored = hasher.hash("correct horse battery staple");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return hasher.verify("correct horse battery staple", stored);
+    }
+
+    @Benchmark
+    public String hash() {
+        return hasher.hash("correct horse battery staple");
+    }
+
+    /**
+     * A verification through the bounded hashing pool, as a login makes it
+     */
+    @Benchmark
+    public boolean verifyAsync() {
+        return hasher.verifyAsync("correct horse battery staple", stored).join();
+    }
+}
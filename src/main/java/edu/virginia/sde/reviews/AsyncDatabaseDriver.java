@@ -0,0 +1,179 @@
+package edu.virginia.sde.reviews;
+
+import javafx.application.Platform;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs DatabaseDriver calls off the JavaFX application thread. Every call returns a CompletableFuture
+ * completed on a database worker thread; use {@link #onFxThread} to handle the result back on the FX thread.
+ */
+public class AsyncDatabaseDriver {
+
+    /**
+     * A unit of work against the database driver
+     */
+    @FunctionalInterface
+    public interface DatabaseCall<T> {
+        T call(DatabaseDriver driver) throws SQLException;
+    }
+
+    private static AsyncDatabaseDriver instance;
+
+    private final DatabaseDriver driver;
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<?>> latestByKey = new ConcurrentHashMap<>();
+    private volatile CompletableFuture<Void> ready = CompletableFuture.completedFuture(null);
+
+    public AsyncDatabaseDriver(DatabaseDriver driver) {
+        this.driver = driver;
+        this.executor = createExecutor();
+    }
+
+    public static synchronized AsyncDatabaseDriver getInstance(DatabaseDriver driver) {
+        if (instance == null) {
+            instance = new AsyncDatabaseDriver(driver);
+        }
+        return instance;
+    }
+
+    /**
+     * Shuts down the shared driver if one was created, without starting an executor just to stop it
+     */
+    public static void shutdownIfStarted() {
+        AsyncDatabaseDriver started;
+        synchronized (AsyncDatabaseDriver.class) {
+            started = instance;
+        }
+        if (started != null) {
+            started.shutdown();
+        }
+    }
+
+    /**
+     * Runs setup work, such as connecting and checking the schema, on a database worker thread. Calls submitted
+     * after it wait until it is done, and fail with its error if it fails, so the caller need not wait for it.
+     * @param setup The work to run before any later call
+     * @return A future completed once the setup is done
+     */
+    public synchronized CompletableFuture<Void> initialize(DatabaseCall<?> setup) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        ready.whenComplete((ignored, error) -> {
+            if (error != null) {
+                done.completeExceptionally(error);
+            } else {
+                execute(driver -> {
+                    setup.call(driver);
+                    return null;
+                }, done);
+            }
+        });
+        ready = done;
+        return done;
+    }
+
+    /**
+     * Runs a call on a database worker thread, once any setup from {@link #initialize} is done
+     * @param call The work to run against the driver
+     * @return A future completed with the call's result, or exceptionally with its error
+     */
+    public <T> CompletableFuture<T> submit(DatabaseCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ready.whenComplete((ignored, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                execute(call, future);
+            }
+        });
+        return future;
+    }
+
+    private <T> void execute(DatabaseCall<T> call, CompletableFuture<T> future) {
+        try {
+            executor.execute(() -> {
+                // Skip work that was cancelled while it was queued
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(call.call(driver));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down while the call waited for setup
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Runs a call on a database worker thread, cancelling the previous call submitted with the same key
+     * if it has not completed yet. Used for requests where only the newest one matters, such as a search.
+     * @param key Identifies the kind of request, e.g. "courseSearch"
+     * @param call The work to run against the driver
+     * @return A future completed with the call's result
+     */
+    public <T> CompletableFuture<T> submitLatest(String key, DatabaseCall<T> call) {
+        CompletableFuture<T> future = submit(call);
+        CompletableFuture<?> previous = latestByKey.put(key, future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        future.whenComplete((result, error) -> latestByKey.remove(key, future));
+        return future;
+    }
+
+    /**
+     * Delivers the outcome of a future on the JavaFX application thread. Cancelled futures are ignored,
+     * since they were superseded by a newer request.
+     * @param future The future to wait on
+     * @param onSuccess Called with the result
+     * @param onError Called with the cause of the failure
+     */
+    public static <T> void onFxThread(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        future.whenComplete((result, error) -> {
+            if (error == null) {
+                Platform.runLater(() -> onSuccess.accept(result));
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!(cause instanceof CancellationException)) {
+                Platform.runLater(() -> onError.accept(cause));
+            }
+        });
+    }
+
+    /**
+     * Stops accepting work and lets queued calls finish
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Uses a virtual thread per call when the runtime supports them (Java 21+), otherwise one daemon thread
+     * per pooled reader connection. Concurrency is bounded by the connection pool either way.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(ConnectionPool.DEFAULT_READER_COUNT, runnable -> {
+                Thread thread = new Thread(runnable, "database-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package edu.virginia.sde.reviews;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Seeds a database with generated courses, users, and reviews for load testing.
+ * <p>
+ * Course popularity follows a Zipf distribution, so a few courses get most of the reviews, and how many
+ * reviews a user writes is skewed the same way. Each course has a hidden quality that its ratings cluster
+ * around, which gives the mostly positive, J-shaped rating distribution of real course reviews.
+ * <p>
+ * Rows are inserted with batched prepared statements inside large transactions. The secondary indexes and
+ * the aggregate and full-text triggers are dropped for the load and rebuilt once at the end.
+ * <p>
+ * Usage: BulkLoader &lt;database file&gt; &lt;courses&gt; &lt;users&gt; &lt;reviews&gt; [seed]
+ */
+public class BulkLoader {
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    public static final int DEFAULT_TRANSACTION_SIZE = 500_000;
+
+    private static final String[] SUBJECTS = {"CS", "MATH", "PHYS", "ECON", "STS", "APMA", "ECE", "BIOL", "CHEM",
+            "ENGL", "HIST", "PSYC", "PHIL", "COMM", "ARTH", "MUSI", "SOC", "PLAP", "ASTR", "EVSC"};
+    private static final String[] TITLE_LEADS = {"Introduction to", "Advanced", "Topics in", "Foundations of",
+            "Principles of", "Applied", "Modern", "Seminar in", "Theory of", "Methods in"};
+    private static final String[] TITLE_TOPICS = {"Software Development", "Data Structures", "Algorithms",
+            "Computer Systems", "Linear Algebra", "Calculus", "Statistics", "Mechanics", "Microeconomics",
+            "Macroeconomics", "Ethics", "Organic Chemistry", "Genetics", "Neuroscience", "Literature",
+            "World History", "Machine Learning", "Databases", "Networks", "Signal Processing"};
+    private static final String[] COMMENTS = {"Great course, would recommend.", "Heavy workload but worth it.",
+            "Lectures were hard to follow.", "Fair exams and helpful office hours.", "Not what I expected.",
+            "The projects were the best part.", "Too much busywork.", "Learned a lot.", ""};
+    private static final int MAX_REVIEWS_PER_USER = 1000;
+    private static final long TWO_YEARS_MILLIS = 2L * 365 * 24 * 60 * 60 * 1000;
+
+    private final String sqliteFilename;
+    private final SplittableRandom random;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int transactionSize = DEFAULT_TRANSACTION_SIZE;
+
+    public BulkLoader(String sqliteFilename, long seed) {
+        this.sqliteFilename = sqliteFilename;
+        this.random = new SplittableRandom(seed);
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setTransactionSize(int transactionSize) {
+        this.transactionSize = transactionSize;
+    }
+
+    /**
+     * The number of rows loaded by {@link #load(int, int, int)}, and how long it took
+     */
+    public record Summary(int courses, int users, int reviews, long elapsedMillis) {
+    }
+
+    /**
+     * @param userId The ID of a generated user
+     * @return The username the loader gives that user
+     */
+    public static String usernameFor(int userId) {
+        return "user" + userId;
+    }
+
+    /**
+     * Generates and inserts the given number of rows, after any rows already in the database.
+     * Fewer reviews than requested are written if the users cannot review that many distinct courses.
+     * @return The number of rows actually written
+     */
+    public Summary load(int courseCount, int userCount, int reviewCount) throws SQLException {
+        long start = System.nanoTime();
+        DatabaseDriver driver = new DatabaseDriver(sqliteFilename);
+        driver.connect();
+        driver.createTables();
+        driver.disconnect();
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + sqliteFilename)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA foreign_keys = ON");
+                statement.execute("PRAGMA synchronous = OFF");
+                statement.execute("PRAGMA temp_store = MEMORY");
+                statement.execute("PRAGMA cache_size = -262144"); // 256 MiB
+            }
+            SchemaMigrator migrator = new SchemaMigrator(connection);
+            List<String> derivedObjects = migrator.dropDerivedObjects();
+            int reviews;
+            try {
+                connection.setAutoCommit(false);
+                int firstCourseId = nextId(connection, "Courses");
+                int firstUserId = nextId(connection, "Users");
+                insertCourses(connection, firstCourseId, courseCount);
+                insertUsers(connection, firstUserId, userCount);
+                reviews = insertReviews(connection, firstCourseId, courseCount, firstUserId, userCount, reviewCount);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+                migrator.restoreDerivedObjects(derivedObjects);
+            }
+            return new Summary(courseCount, userCount, reviews, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void insertCourses(Connection connection, int firstId, int count) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO Courses(ID, Subject, CourseNumber, Title) VALUES(?, ?, ?, ?)")) {
+            for (int i = 0; i < count; i++) {
+                int id = firstId + i;
+                statement.setInt(1, id);
+                statement.setString(2, SUBJECTS[random.nextInt(SUBJECTS.length)]);
+                statement.setInt(3, 1000 + random.nextInt(9000));
+                // The ID keeps titles unique within a subject and course number
+                statement.setString(4, TITLE_LEADS[random.nextInt(TITLE_LEADS.length)] + " "
+                        + TITLE_TOPICS[random.nextInt(TITLE_TOPICS.length)] + " " + id);
+                addRow(connection, statement, i + 1);
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private void insertUsers(Connection connection, int firstId, int count) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO Users(ID, Username, Password) VALUES(?, ?, ?)")) {
+            for (int i = 0; i < count; i++) {
+                int id = firstId + i;
+                statement.setInt(1, id);
+                statement.setString(2, usernameFor(id));
+                statement.setString(3, "password" + id);
+                addRow(connection, statement, i + 1);
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private int insertReviews(Connection connection, int firstCourseId, int courseCount,
+                              int firstUserId, int userCount, int reviewCount) throws SQLException {
+        if (courseCount == 0 || userCount == 0) {
+            return 0;
+        }
+        double[] coursePopularity = zipfCumulative(courseCount, 1.0);
+        int[] courseByRank = shuffledIndexes(courseCount);
+        double[] courseQuality = new double[courseCount];
+        for (int i = 0; i < courseCount; i++) {
+            courseQuality[i] = 2.5 + 2.3 * Math.sqrt(random.nextDouble());
+        }
+        int[] reviewsPerUser = reviewsPerUser(userCount, reviewCount, courseCount);
+
+        long now = System.currentTimeMillis();
+        int written = 0;
+        Set<Integer> reviewed = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO Reviews(UserID, CourseID, Rating, EntryTime, Comment) VALUES(?, ?, ?, ?, ?)")) {
+            for (int user = 0; user < userCount; user++) {
+                reviewed.clear();
+                while (reviewed.size() < reviewsPerUser[user]) {
+                    int course = courseByRank[sample(coursePopularity)];
+                    if (!reviewed.add(course)) {
+                        // Heavy users run out of popular courses, so retry uniformly instead of waiting on the tail
+                        course = random.nextInt(courseCount);
+                        if (!reviewed.add(course)) {
+                            continue;
+                        }
+                    }
+                    statement.setInt(1, firstUserId + user);
+                    statement.setInt(2, firstCourseId + course);
+                    statement.setInt(3, rating(courseQuality[course]));
+                    // Skewed towards recent reviews
+                    statement.setLong(4, now - (long) (TWO_YEARS_MILLIS * Math.pow(random.nextDouble(), 2)));
+                    statement.setString(5, COMMENTS[random.nextInt(COMMENTS.length)]);
+                    addRow(connection, statement, ++written);
+                }
+            }
+            statement.executeBatch();
+        }
+        return written;
+    }
+
+    /**
+     * Splits the reviews between the users with Zipf-distributed activity, in a shuffled order so user IDs
+     * do not predict activity. A user reviews at most half of the courses and at most MAX_REVIEWS_PER_USER.
+     */
+    private int[] reviewsPerUser(int userCount, int reviewCount, int courseCount) {
+        int maxPerUser = Math.max(1, Math.min(courseCount / 2, MAX_REVIEWS_PER_USER));
+        double[] weights = new double[userCount];
+        double total = 0;
+        for (int i = 0; i < userCount; i++) {
+            weights[i] = 1.0 / Math.pow(i + 1, 0.8);
+            total += weights[i];
+        }
+        int[] counts = new int[userCount];
+        int assigned = 0;
+        for (int i = 0; i < userCount; i++) {
+            counts[i] = (int) Math.min(maxPerUser, Math.floor(reviewCount * weights[i] / total));
+            assigned += counts[i];
+        }
+        // Hand out what rounding and the cap left over, one review per user per pass, until every user is full
+        for (int pass = 0; assigned < reviewCount && pass < maxPerUser; pass++) {
+            for (int user = 0; user < userCount && assigned < reviewCount; user++) {
+                if (counts[user] < maxPerUser) {
+                    counts[user]++;
+                    assigned++;
+                }
+            }
+        }
+        shuffle(counts);
+        return counts;
+    }
+
+    /**
+     * @return The numbers 0 to n - 1 in random order, so that popularity does not follow ID order
+     */
+    private int[] shuffledIndexes(int n) {
+        int[] indexes = new int[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = i;
+        }
+        shuffle(indexes);
+        return indexes;
+    }
+
+    private void shuffle(int[] values) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+
+    /**
+     * @return The cumulative probabilities of ranks 1 to n under a Zipf distribution with exponent s
+     */
+    private static double[] zipfCumulative(int n, double s) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, s);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private int sample(double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    private int rating(double quality) {
+        // Box-Muller transform for a normally distributed spread around the course's quality
+        double noise = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+        return (int) Math.max(1, Math.min(5, Math.round(quality + 0.9 * noise)));
+    }
+
+    private void addRow(Connection connection, PreparedStatement statement, int row) throws SQLException {
+        statement.addBatch();
+        if (row % batchSize == 0) {
+            statement.executeBatch();
+        }
+        if (row % transactionSize == 0) {
+            statement.executeBatch();
+            connection.commit();
+        }
+    }
+
+    private static int nextId(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(ID), 0) + 1 FROM " + table)) {
+            return resultSet.next() ? resultSet.getInt(1) : 1;
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 4) {
+            System.err.println("Usage: BulkLoader <database file> <courses> <users> <reviews> [seed]");
+            System.exit(1);
+        }
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        BulkLoader loader = new BulkLoader(args[0], seed);
+        Summary summary = loader.load(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        System.out.printf("Loaded %d courses, %d users and %d reviews into %s in %.1f s%n", summary.courses(),
+                summary.users(), summary.reviews(), args[0], summary.elapsedMillis() / 1000.0);
+    }
+}
@@ -8,24 +8,60 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Objects;
 
-public class Configuration {
+/**
+ * The settings in config.json. The file is read once, the first time {@link #getInstance()} is called,
+ * and every caller shares the same immutable result.
+ */
+public final class Configuration {
     public static final String configurationFilename = "config.json";
-    private String databaseFilename;
+    public static final int DEFAULT_METRICS_REPORT_SECONDS = 300;
 
-    public Configuration() { }
+    private static Configuration instance;
 
-    public String getDatabaseFilename() {
-        if (databaseFilename == null) {
-            parseJsonConfigFile();
+    private final String databaseFilename;
+    private final int passwordIterations;
+    private final int metricsReportSeconds;
+
+    private Configuration(JSONObject configJson) {
+        this.databaseFilename = configJson.getString("database");
+        this.passwordIterations = configJson.optInt("passwordIterations", PasswordHasher.DEFAULT_ITERATIONS);
+        this.metricsReportSeconds = configJson.optInt("metricsReportSeconds", DEFAULT_METRICS_REPORT_SECONDS);
+    }
+
+    /**
+     * @return The configuration, parsed from config.json on the first call
+     */
+    public static synchronized Configuration getInstance() {
+        if (instance == null) {
+            instance = new Configuration(parseJsonConfigFile());
         }
+        return instance;
+    }
+
+    public String getDatabaseFilename() {
         return databaseFilename;
     }
 
     /**
-     * Parse the JSON file config.json to set all three of the fields:
-     *  busStopsURL, busLinesURL, databaseFilename
+     * @return The PBKDF2 iteration count for new password hashes, {@link PasswordHasher#DEFAULT_ITERATIONS}
+     * unless passwordIterations is set
      */
-    private void parseJsonConfigFile() {
+    public int getPasswordIterations() {
+        return passwordIterations;
+    }
+
+    /**
+     * @return How often database metrics are summarised to the log, in seconds, or 0 for never;
+     * {@link #DEFAULT_METRICS_REPORT_SECONDS} unless metricsReportSeconds is set
+     */
+    public int getMetricsReportSeconds() {
+        return metricsReportSeconds;
+    }
+
+    /**
+     * Parse the JSON file config.json
+     */
+    private static JSONObject parseJsonConfigFile() {
         try (InputStream inputStream = Objects.requireNonNull(Configuration.class.getResourceAsStream(configurationFilename));
              BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream))) {
 
@@ -34,15 +70,10 @@ public class Configuration {
             while ((line = bufferedReader.readLine()) != null) {
                 sb.append(line);
             }
-            parseConfig(sb);
+            return new JSONObject(sb.toString());
 
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
-
-    private void parseConfig(StringBuilder sb) {
-        JSONObject configJson = new JSONObject(sb.toString());
-        databaseFilename = configJson.getString("database");
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+package edu.virginia.sde.reviews;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A pool of SQLite connections to one database file: a single writer connection and a fixed number of
+ * read-only reader connections. The database is switched to WAL journal mode so readers do not block the
+ * writer or each other.
+ * <p>
+ * Leases are per thread and reentrant: a thread that already holds a connection gets the same connection
+ * back for nested calls, and a thread holding the writer reads through the writer so it sees its own writes.
+ */
+public class ConnectionPool {
+    public static final int DEFAULT_READER_COUNT = 4;
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    private final PooledConnection writer;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final List<PooledConnection> readers = new ArrayList<>();
+    private final BlockingQueue<PooledConnection> idleReaders;
+    private final ThreadLocal<PooledConnection> held = new ThreadLocal<>();
+    private volatile boolean closed;
+
+    public ConnectionPool(String sqliteFilename) throws SQLException {
+        this(sqliteFilename, DEFAULT_READER_COUNT);
+    }
+
+    public ConnectionPool(String sqliteFilename, int readerCount) throws SQLException {
+        if (readerCount <= 0) {
+            throw new IllegalArgumentException("A pool needs at least one reader");
+        }
+        String url = "jdbc:sqlite:" + sqliteFilename;
+        this.idleReaders = new ArrayBlockingQueue<>(readerCount);
+        this.writer = open(url, true);
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                PooledConnection reader = open(url, false);
+                readers.add(reader);
+                idleReaders.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private PooledConnection open(String url, boolean isWriter) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            //the next line enables foreign key enforcement - do not delete/comment out
+            statement.execute("PRAGMA foreign_keys = ON");
+            if (isWriter) {
+                // WAL is persistent in the database file, so setting it once on the writer covers every connection
+                statement.execute("PRAGMA journal_mode = WAL");
+                // Sync the WAL on every commit so a committed write survives power loss; ReviewWriteQueue
+                // groups review writes into shared commits to spread that cost
+                statement.execute("PRAGMA synchronous = FULL");
+            } else {
+                statement.execute("PRAGMA query_only = ON");
+            }
+        }
+        connection.setAutoCommit(true);
+        return new PooledConnection(this, connection, isWriter);
+    }
+
+    /**
+     * Leases a connection for reading. Returns the connection the current thread already holds, if any.
+     * @return A connection to close once the read is done
+     */
+    public PooledConnection reader() throws SQLException {
+        checkOpen();
+        PooledConnection current = held.get();
+        if (current != null) {
+            current.holds++;
+            return current;
+        }
+        PooledConnection reader;
+        try {
+            reader = idleReaders.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        if (reader == null) {
+            throw new SQLException("Timed out waiting for a database connection");
+        }
+        reader.holds = 1;
+        held.set(reader);
+        return reader;
+    }
+
+    /**
+     * Leases the writer connection, waiting for any other thread using it to finish
+     * @return The writer connection, to close once the write is done
+     */
+    public PooledConnection writer() throws SQLException {
+        checkOpen();
+        PooledConnection current = held.get();
+        if (current == writer) {
+            writer.holds++;
+            return writer;
+        }
+        try {
+            if (!writerLock.tryLock(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out waiting for the database writer");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the database writer", e);
+        }
+        // A thread holding a reader keeps it until the writer is released
+        writer.previous = current;
+        writer.holds = 1;
+        held.set(writer);
+        return writer;
+    }
+
+    void release(PooledConnection connection) {
+        if (--connection.holds > 0) {
+            return;
+        }
+        held.set(connection.previous);
+        connection.previous = null;
+        if (connection.isWriter()) {
+            writerLock.unlock();
+        } else if (!closed) {
+            idleReaders.offer(connection);
+        }
+    }
+
+    /**
+     * Closes every connection in the pool
+     */
+    public void close() {
+        closed = true;
+        if (writer != null) {
+            writer.closeConnection();
+        }
+        readers.forEach(PooledConnection::closeConnection);
+        idleReaders.clear();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return The number of statement lookups served from the statement caches of every connection
+     */
+    public long getStatementCacheHits() {
+        long hits = writer.getStatementCache().getHits();
+        for (PooledConnection reader : readers) {
+            hits += reader.getStatementCache().getHits();
+        }
+        return hits;
+    }
+
+    /**
+     * @return The number of statement lookups that had to prepare a new statement, across every connection
+     */
+    public long getStatementCacheMisses() {
+        long misses = writer.getStatementCache().getMisses();
+        for (PooledConnection reader : readers) {
+            misses += reader.getStatementCache().getMisses();
+        }
+        return misses;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Connection is not open");
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package edu.virginia.sde.reviews;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * An in-memory copy of the course catalogue with average ratings, indexed by ID, by subject,
+ * and by subject and course number. It is filled from the database on first use and then patched
+ * by the writes that change courses or their ratings, so catalogue reads are served from memory.
+ * <p>
+ * Cached Course objects are never modified; a patch replaces the course in the cache.
+ */
+public class CourseCatalogCache {
+    private final TreeMap<Integer, Course> byId = new TreeMap<>();
+    private final Map<String, List<Integer>> bySubject = new HashMap<>();
+    private final Map<String, List<Integer>> bySubjectAndNumber = new HashMap<>();
+    private boolean loaded;
+    private long version;
+    private long hits;
+    private long misses;
+
+    /**
+     * @return A counter that changes on every patch or invalidation, read before querying the catalogue to load
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Replaces the cached catalogue, unless the cache was patched or invalidated since the catalogue was read,
+     * in which case the catalogue may be missing that change and is not cached
+     * @param courses Every course in the database
+     * @param expectedVersion The {@link #getVersion()} from before the catalogue was read
+     */
+    public synchronized void load(List<Course> courses, long expectedVersion) {
+        if (version != expectedVersion) {
+            return;
+        }
+        clear();
+        courses.forEach(this::index);
+        loaded = true;
+    }
+
+    /**
+     * Drops the cached catalogue so the next read reloads it from the database
+     */
+    public synchronized void invalidate() {
+        version++;
+        clear();
+        loaded = false;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return Every course in ID order, or an empty Optional if the catalogue is not cached
+     */
+    public synchronized Optional<List<Course>> getAll() {
+        if (!record(loaded)) {
+            return Optional.empty();
+        }
+        return Optional.of(new ArrayList<>(byId.values()));
+    }
+
+    /**
+     * @param courseId The ID of the course
+     * @return The cached course, or an empty Optional if it is not cached
+     */
+    public synchronized Optional<Course> getById(int courseId) {
+        Course course = loaded ? byId.get(courseId) : null;
+        record(course != null);
+        return Optional.ofNullable(course);
+    }
+
+    /**
+     * Finds the courses matching the subject and course number of the criteria through the indexes.
+     * Title criteria are not applied.
+     * @param criteria The subject and course number to match
+     * @return The matching courses in ID order, or an empty Optional if the catalogue is not cached
+     */
+    public synchronized Optional<List<Course>> findBySubjectAndNumber(CourseSearchCriteria criteria) {
+        if (!record(loaded)) {
+            return Optional.empty();
+        }
+        List<Course> courses = new ArrayList<>();
+        if (criteria.hasSubject()) {
+            List<Integer> ids = criteria.hasCourseNumber()
+                    ? bySubjectAndNumber.get(subjectAndNumberKey(criteria.getSubject(), criteria.getCourseNumber()))
+                    : bySubject.get(criteria.getSubject());
+            for (int id : ids == null ? Collections.<Integer>emptyList() : ids) {
+                courses.add(byId.get(id));
+            }
+        } else {
+            for (Course course : byId.values()) {
+                if (!criteria.hasCourseNumber() || course.getCourseNumber() == criteria.getCourseNumber()) {
+                    courses.add(course);
+                }
+            }
+        }
+        return Optional.of(courses);
+    }
+
+    /**
+     * Adds a course to the cache, or replaces the cached course with the same ID
+     * @param course The course as stored in the database
+     */
+    public synchronized void put(Course course) {
+        version++;
+        if (!loaded) {
+            return;
+        }
+        Course previous = byId.get(course.getCourseID());
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(course);
+    }
+
+    /**
+     * Replaces the average rating of a cached course
+     * @param courseId The ID of the course
+     * @param averageRating The new average rating, or null if the course has no reviews
+     */
+    public synchronized void updateAverageRating(int courseId, Double averageRating) {
+        version++;
+        Course course = loaded ? byId.get(courseId) : null;
+        if (course != null) {
+            byId.put(courseId, new Course(courseId, course.getSubject(), course.getCourseNumber(),
+                    course.getTitle(), averageRating));
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The fraction of reads served from the cache, or 0 if nothing has been read yet
+     */
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private boolean record(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return hit;
+    }
+
+    private void index(Course course) {
+        int id = course.getCourseID();
+        byId.put(id, course);
+        bySubject.computeIfAbsent(course.getSubject(), key -> new ArrayList<>()).add(id);
+        bySubjectAndNumber.computeIfAbsent(subjectAndNumberKey(course.getSubject(), course.getCourseNumber()),
+                key -> new ArrayList<>()).add(id);
+    }
+
+    private void unindex(Course course) {
+        Integer id = course.getCourseID();
+        byId.remove(id);
+        bySubject.getOrDefault(course.getSubject(), new ArrayList<>()).remove(id);
+        bySubjectAndNumber.getOrDefault(subjectAndNumberKey(course.getSubject(), course.getCourseNumber()),
+                new ArrayList<>()).remove(id);
+    }
+
+    private void clear() {
+        byId.clear();
+        bySubject.clear();
+        bySubjectAndNumber.clear();
+    }
+
+    private static String subjectAndNumberKey(String subject, int courseNumber) {
+        return subject + " " + courseNumber;
+    }
+}
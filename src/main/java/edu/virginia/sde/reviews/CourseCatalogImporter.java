@@ -0,0 +1,292 @@
+package edu.virginia.sde.reviews;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Imports a registrar course catalogue from a CSV or JSON file. The file is read one course at a time and
+ * written in chunks through {@link DatabaseDriver#addCourses(List)}, so memory use does not grow with the file.
+ * Courses already in the database, by subject, course number, and title, are skipped.
+ * <p>
+ * CSV files need a header row naming the Subject, CourseNumber, and Title columns, in any order.
+ * JSON files hold an array of objects with subject, courseNumber, and title keys.
+ * Rows that would not pass the checks of the Add Course form are rejected.
+ * <p>
+ * Usage: CourseCatalogImporter &lt;catalogue file&gt; [database file]
+ */
+public class CourseCatalogImporter {
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * Notified after every chunk of courses is written
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(ImportResult progress);
+    }
+
+    /**
+     * Counts of the courses read so far, and what happened to them
+     * @param read Courses read from the file
+     * @param imported Courses added to the database
+     * @param duplicates Courses skipped because they were already in the database or earlier in the file
+     * @param rejected Rows skipped because they were not valid courses
+     */
+    public record ImportResult(int read, int imported, int duplicates, int rejected) {
+    }
+
+    private final DatabaseDriver databaseDriver;
+    private final int chunkSize;
+
+    public CourseCatalogImporter(DatabaseDriver databaseDriver) {
+        this(databaseDriver, DEFAULT_CHUNK_SIZE);
+    }
+
+    public CourseCatalogImporter(DatabaseDriver databaseDriver, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.databaseDriver = databaseDriver;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports a catalogue file, choosing the format from its .csv or .json extension
+     * @param file The catalogue file
+     * @param listener Notified of progress, may be null
+     * @return The final counts
+     */
+    public ImportResult importFile(Path file, ProgressListener listener) throws IOException, SQLException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (name.endsWith(".csv")) {
+                return importCsv(reader, listener);
+            } else if (name.endsWith(".json")) {
+                return importJson(reader, listener);
+            }
+        }
+        throw new IOException("Unsupported catalogue format, expected .csv or .json: " + file);
+    }
+
+    /**
+     * Imports courses from CSV with a header row. Fields may be quoted, with "" for a quote inside a field.
+     * @param reader The CSV text
+     * @param listener Notified of progress, may be null
+     * @return The final counts
+     */
+    public ImportResult importCsv(Reader reader, ProgressListener listener) throws IOException, SQLException {
+        Reader input = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        List<String> header = readCsvRecord(input);
+        if (header == null) {
+            throw new IOException("The CSV file is empty");
+        }
+        int subjectColumn = findColumn(header, "subject");
+        int numberColumn = findColumn(header, "coursenumber");
+        int titleColumn = findColumn(header, "title");
+
+        Progress progress = new Progress(listener);
+        List<String> record;
+        while ((record = readCsvRecord(input)) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue; // blank line
+            }
+            progress.add(toCourse(field(record, subjectColumn), field(record, numberColumn), field(record, titleColumn)));
+        }
+        return progress.finish();
+    }
+
+    /**
+     * Imports courses from a JSON array of objects, parsing one array element at a time
+     * @param reader The JSON text
+     * @param listener Notified of progress, may be null
+     * @return The final counts
+     */
+    public ImportResult importJson(Reader reader, ProgressListener listener) throws IOException, SQLException {
+        Progress progress = new Progress(listener);
+        try {
+            JSONTokener tokener = new JSONTokener(reader);
+            if (tokener.nextClean() != '[') {
+                throw tokener.syntaxError("A course catalogue must be a JSON array");
+            }
+            if (tokener.nextClean() != ']') {
+                tokener.back();
+                while (true) {
+                    Object value = tokener.nextValue();
+                    progress.add(value instanceof JSONObject course ? toCourse(course) : null);
+                    char separator = tokener.nextClean();
+                    if (separator == ']') {
+                        break;
+                    } else if (separator != ',') {
+                        throw tokener.syntaxError("Expected ',' or ']' after a course");
+                    }
+                }
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid JSON catalogue: " + e.getMessage(), e);
+        }
+        return progress.finish();
+    }
+
+    private static Course toCourse(JSONObject json) {
+        String subject = optString(json, "subject", "Subject");
+        Object number = json.has("courseNumber") ? json.opt("courseNumber") : json.opt("CourseNumber");
+        String title = optString(json, "title", "Title");
+        return toCourse(subject, number == null ? null : number.toString(), title);
+    }
+
+    private static String optString(JSONObject json, String key, String alternateKey) {
+        return json.has(key) ? json.optString(key, null) : json.optString(alternateKey, null);
+    }
+
+    /**
+     * Applies the same rules as adding a course from the search screen
+     * @return The course, or null if the fields do not make a valid course
+     */
+    private static Course toCourse(String subject, String number, String title) {
+        if (subject == null || number == null || title == null) {
+            return null;
+        }
+        subject = subject.trim().toUpperCase();
+        number = number.trim();
+        title = title.trim();
+        if (!subject.matches("[A-Z]{2,4}") || !number.matches("\\d{4}") || title.isEmpty() || title.length() > 50) {
+            return null;
+        }
+        return new Course(0, subject, Integer.parseInt(number), title, null);
+    }
+
+    /**
+     * Reads one CSV record, which may span lines when a quoted field contains a line break
+     * @return The fields of the record, or null at the end of the input
+     */
+    private static List<String> readCsvRecord(Reader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static int findColumn(List<String> header, String name) throws IOException {
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).trim().replace("\uFEFF", "").replace(" ", "").replace("_", "");
+            if (column.equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new IOException("The CSV header has no " + name + " column");
+    }
+
+    private static String field(List<String> record, int column) {
+        return column < record.size() ? record.get(column) : null;
+    }
+
+    /**
+     * Collects courses into chunks and writes each full chunk
+     */
+    private class Progress {
+        private final ProgressListener listener;
+        private final List<Course> chunk = new ArrayList<>(chunkSize);
+        private int read;
+        private int imported;
+        private int written;
+        private int rejected;
+
+        Progress(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        void add(Course course) throws SQLException {
+            read++;
+            if (course == null) {
+                rejected++;
+                return;
+            }
+            chunk.add(course);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        ImportResult finish() throws SQLException {
+            if (!chunk.isEmpty()) {
+                flush();
+            }
+            return current();
+        }
+
+        private void flush() throws SQLException {
+            imported += databaseDriver.addCourses(chunk);
+            written += chunk.size();
+            chunk.clear();
+            if (listener != null) {
+                listener.onProgress(current());
+            }
+        }
+
+        private ImportResult current() {
+            return new ImportResult(read, imported, written - imported, rejected);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length < 1) {
+            System.err.println("Usage: CourseCatalogImporter <catalogue file> [database file]");
+            System.exit(1);
+        }
+        String databaseFilename = args.length > 1 ? args[1] : Configuration.getInstance().getDatabaseFilename();
+        DatabaseDriver driver = new DatabaseDriver(databaseFilename);
+        driver.connect();
+        try {
+            driver.createTables();
+            ImportResult result = new CourseCatalogImporter(driver).importFile(Path.of(args[0]),
+                    progress -> System.out.printf("Read %d courses, imported %d%n", progress.read(), progress.imported()));
+            System.out.printf("Done: read %d, imported %d, %d duplicates, %d rejected%n",
+                    result.read(), result.imported(), result.duplicates(), result.rejected());
+        } finally {
+            driver.disconnect();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package edu.virginia.sde.reviews;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Top-N course leaderboards, for the whole catalogue and for each subject. Each leaderboard keeps its best
+ * {@link #CAPACITY} courses in order, so reading the top N costs O(N) however large the catalogue is.
+ * <p>
+ * A leaderboard is built on first use by running every candidate course through a bounded heap, then kept up to
+ * date by {@link #update} as reviews change. A course that rises, or moves within the leaderboard, is repositioned
+ * in place. A course that falls below the last kept place may be overtaken by a course that is not kept, so
+ * the leaderboard is dropped and rebuilt on its next read.
+ * <p>
+ * Top rated ranks by a Bayesian average: every course starts with a number of imaginary reviews at the
+ * catalogue's mean rating, which real reviews outweigh as they accumulate. Trending ranks by review count with
+ * each review's weight halving every {@link #TRENDING_HALF_LIFE}. Both scores are measured against values fixed
+ * when the leaderboards are created, so a review write changes the score of only the course it belongs to.
+ */
+public class CourseLeaderboards {
+    public static final int CAPACITY = 100;
+    public static final Duration TRENDING_HALF_LIFE = Duration.ofDays(7);
+
+    private final double priorMean;
+    private final double priorWeight;
+    private final long referenceMillis;
+
+    private final Map<Integer, CourseRatings> ratings = new HashMap<>();
+    private final Map<String, Set<Integer>> coursesBySubject = new HashMap<>();
+    private final Map<BoardKey, List<Integer>> boards = new HashMap<>();
+
+    /**
+     * @param priorMean The mean rating a course is assumed to have before its reviews are counted
+     * @param priorWeight How many reviews that assumption counts as
+     * @param referenceMillis The time trending weights are measured from, in epoch milliseconds
+     */
+    public CourseLeaderboards(double priorMean, double priorWeight, long referenceMillis) {
+        if (priorWeight <= 0) {
+            throw new IllegalArgumentException("Prior weight must be positive");
+        }
+        this.priorMean = priorMean;
+        this.priorWeight = priorWeight;
+        this.referenceMillis = referenceMillis;
+    }
+
+    /**
+     * Records the current ratings of a course and repositions it on the leaderboards it is on
+     * @param courseId The ID of the course
+     * @param subject The subject of the course
+     * @param reviewCount The number of reviews the course has
+     * @param ratingSum The sum of the course's ratings
+     * @param trendWeight The course's weight from {@link #getTrendWeight}
+     */
+    public synchronized void update(int courseId, String subject, int reviewCount, long ratingSum, double trendWeight) {
+        CourseRatings previous = ratings.remove(courseId);
+        if (previous != null) {
+            Set<Integer> subjectCourses = coursesBySubject.get(previous.subject());
+            subjectCourses.remove(courseId);
+            if (subjectCourses.isEmpty()) {
+                coursesBySubject.remove(previous.subject());
+            }
+        }
+        CourseRatings current = null;
+        if (reviewCount > 0) {
+            current = new CourseRatings(subject, reviewCount, ratingSum, trendWeight);
+            ratings.put(courseId, current);
+            coursesBySubject.computeIfAbsent(subject, key -> new HashSet<>()).add(courseId);
+        }
+        for (LeaderboardType type : LeaderboardType.values()) {
+            if (previous != null) {
+                reposition(new BoardKey(type, null), courseId, current);
+                if (current == null || !previous.subject().equals(current.subject())) {
+                    reposition(new BoardKey(type, previous.subject()), courseId, null);
+                }
+            } else if (current != null) {
+                reposition(new BoardKey(type, null), courseId, current);
+            }
+            if (current != null) {
+                reposition(new BoardKey(type, current.subject()), courseId, current);
+            }
+        }
+    }
+
+    /**
+     * Gets the best courses on a leaderboard
+     * @param type The leaderboard
+     * @param subject The subject to rank courses within, or null to rank the whole catalogue
+     * @param limit The most courses to return
+     * @return Up to limit courses, best first
+     */
+    public synchronized List<LeaderboardEntry> getTop(LeaderboardType type, String subject, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<Integer> top;
+        if (limit > CAPACITY) {
+            top = selectTop(type, candidates(subject), limit);
+        } else {
+            top = boards.computeIfAbsent(new BoardKey(type, subject),
+                    key -> selectTop(type, candidates(subject), CAPACITY));
+        }
+        List<LeaderboardEntry> entries = new ArrayList<>(Math.min(limit, top.size()));
+        for (int i = 0; i < top.size() && i < limit; i++) {
+            int courseId = top.get(i);
+            CourseRatings course = ratings.get(courseId);
+            entries.add(new LeaderboardEntry(courseId, course.reviewCount(),
+                    (double) course.ratingSum() / course.reviewCount(), score(type, course)));
+        }
+        return entries;
+    }
+
+    /**
+     * @return The Bayesian average of a course with these ratings
+     */
+    public double getBayesianAverage(int reviewCount, long ratingSum) {
+        return (priorWeight * priorMean + ratingSum) / (priorWeight + reviewCount);
+    }
+
+    /**
+     * Gets the trending weight of a course, the sum over its reviews of one half for every
+     * {@link #TRENDING_HALF_LIFE} between the review and the reference time of these leaderboards
+     * @param store The rating column store holding the course's reviews
+     * @param courseId The ID of the course
+     * @return The trending weight
+     */
+    public double getTrendWeight(RatingColumnStore store, int courseId) {
+        return store.getDecayedReviewCount(courseId, referenceMillis, TRENDING_HALF_LIFE.toMillis());
+    }
+
+    private double score(LeaderboardType type, CourseRatings course) {
+        return switch (type) {
+            case TOP_RATED -> getBayesianAverage(course.reviewCount(), course.ratingSum());
+            case MOST_REVIEWED -> course.reviewCount();
+            case TRENDING -> course.trendWeight();
+        };
+    }
+
+    /**
+     * Orders courses best first, breaking ties by course ID
+     */
+    private Comparator<Integer> order(LeaderboardType type) {
+        return Comparator.<Integer>comparingDouble(courseId -> -score(type, ratings.get(courseId)))
+                .thenComparingInt(courseId -> courseId);
+    }
+
+    private Collection<Integer> candidates(String subject) {
+        if (subject == null) {
+            return ratings.keySet();
+        }
+        return coursesBySubject.getOrDefault(subject, Collections.emptySet());
+    }
+
+    /**
+     * Selects the best n candidates with a heap that never holds more than n courses
+     */
+    private List<Integer> selectTop(LeaderboardType type, Collection<Integer> candidates, int n) {
+        Comparator<Integer> order = order(type);
+        // The worst of the kept courses is at the head, ready to be replaced
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(n, Math.max(candidates.size(), 1)) + 1,
+                order.reversed());
+        for (Integer courseId : candidates) {
+            if (heap.size() < n) {
+                heap.add(courseId);
+            } else if (order.compare(courseId, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(courseId);
+            }
+        }
+        List<Integer> top = new ArrayList<>(heap);
+        top.sort(order);
+        return top;
+    }
+
+    /**
+     * Moves a course to its new place on a leaderboard, or drops the leaderboard if its new place cannot be known
+     * @param current The course's new ratings, or null if it no longer belongs on the leaderboard
+     */
+    private void reposition(BoardKey key, int courseId, CourseRatings current) {
+        List<Integer> board = boards.get(key);
+        if (board == null) {
+            return;
+        }
+        // A leaderboard with free places holds every candidate
+        boolean full = board.size() >= CAPACITY;
+        boolean removed = board.remove(Integer.valueOf(courseId));
+        if (current == null) {
+            if (removed && full) {
+                boards.remove(key);
+            }
+            return;
+        }
+        Comparator<Integer> order = order(key.type());
+        int place = Collections.binarySearch(board, courseId, order);
+        int insertAt = place >= 0 ? place : -place - 1;
+        if (insertAt < board.size() || !full) {
+            board.add(insertAt, courseId);
+            if (board.size() > CAPACITY) {
+                board.remove(board.size() - 1);
+            }
+        } else if (removed) {
+            // It fell below every kept course, so an unkept course may now belong in the last place
+            boards.remove(key);
+        }
+    }
+
+    private record CourseRatings(String subject, int reviewCount, long ratingSum, double trendWeight) {
+    }
+
+    /**
+     * @param subject The subject of the leaderboard, or null for the whole catalogue
+     */
+    private record BoardKey(LeaderboardType type, String subject) {
+        BoardKey {
+            Objects.requireNonNull(type);
+        }
+    }
+}
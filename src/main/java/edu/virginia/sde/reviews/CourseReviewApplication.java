@@ -1,17 +1,38 @@
 package edu.virginia.sde.reviews;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 public class CourseReviewApplication extends Application {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CourseReviewApplication.class);
+    /**
+     * When true, the application exits as soon as the login screen is shown, for timing startup and recording
+     * a class data sharing archive
+     */
+    private static final String EXIT_AFTER_STARTUP_PROPERTY = "reviews.exitAfterStartup";
+
+    private static final String LOGIN_SCREEN = "LoginScreen.fxml";
+    private static final String COURSE_SEARCH_SCREEN = "CourseSearchScreen.fxml";
+    private static final String COURSE_REVIEW_SCREEN = "CourseReviewScreen.fxml";
+    private static final String MY_REVIEWS_SCREEN = "MyReviewsScreen.fxml";
+
     private DatabaseDriver databaseDriver;
     private Stage primaryStage;
+    private final Map<String, Screen> screens = new HashMap<>();
 
     public static void main(String[] args) {
         launch(args);
@@ -19,93 +40,134 @@ public class CourseReviewApplication extends Application {
 
     @Override
     public void start(Stage stage) throws Exception {
-        this.databaseDriver = DatabaseDriver.getInstance(new Configuration().getDatabaseFilename());
-        this.databaseDriver.connect();
-        this.databaseDriver.createTables();
+        Configuration configuration = Configuration.getInstance();
+        this.databaseDriver = DatabaseDriver.getInstance(configuration.getDatabaseFilename());
+        DatabaseMetrics.getInstance().start(Duration.ofSeconds(configuration.getMetricsReportSeconds()));
+        AsyncDatabaseDriver asyncDriver = AsyncDatabaseDriver.getInstance(databaseDriver);
+        // Connect and check the schema while the login screen loads; database calls wait for it
+        asyncDriver.initialize(driver -> {
+            driver.connect();
+            driver.createTables();
+            return null;
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                LOGGER.error("Unable to open the database", error);
+            }
+        });
+        // Then load the catalogue, search index and rating store, so the first search and the first course page
+        // after login do not wait for them
+        asyncDriver.submit(driver -> {
+            driver.getCourseSearchIndex();
+            return driver.getRatingColumnStore();
+        });
 
         this.primaryStage = stage;
-        FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("LoginScreen.fxml"));
-        Scene scene = new Scene(fxmlLoader.load());
-        LoginController loginController = fxmlLoader.getController();
-        loginController.setApplication(this);
-
-        stage.setTitle("Course Review Application - Login");
-        stage.setScene(scene);
+        showScreen(LOGIN_SCREEN, "Course Review Application - Login");
         stage.show();
+        Platform.runLater(this::startupComplete);
+    }
+
+    /**
+     * Logs how long the login screen took to appear, measured from the start of the JVM so class loading
+     * and JavaFX startup are counted
+     */
+    private void startupComplete() {
+        long startupMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        LOGGER.info("Login screen shown {} ms after JVM start", startupMillis);
+        if (Boolean.getBoolean(EXIT_AFTER_STARTUP_PROPERTY)) {
+            Platform.exit();
+        }
     }
 
     public void switchToCourseSearch(User currentUser) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("CourseSearchScreen.fxml"));
-            Parent root = loader.load();
-
-            CourseSearchController controller = loader.getController();
-            controller.setApplication(this);
-            controller = loader.getController();
-            controller.setDatabaseDriver(databaseDriver);
+            CourseSearchController controller = showScreen(COURSE_SEARCH_SCREEN, "Course Review Application - Course Search");
             controller.setCurrentUser(currentUser);
-
-            Scene scene = new Scene(root);
-            primaryStage.setScene(scene);
-            primaryStage.setTitle("Course Review Application - Course Search");
+            controller.refresh();
         } catch (IOException ignored) {
         }
     }
 
     public void switchToLoginScreen() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("LoginScreen.fxml"));
-            Parent root = loader.load();
-
-            LoginController loginController = loader.getController();
-            loginController.setDatabaseDriver(databaseDriver);
-            loginController.setApplication(this);
-
-            Scene scene = new Scene(root);
-            primaryStage.setScene(scene);
-            primaryStage.setTitle("Course Review Application - Login");
+            LoginController loginController = showScreen(LOGIN_SCREEN, "Course Review Application - Login");
+            loginController.reset();
         } catch (IOException ignored) {
         }
     }
 
     public void switchToCourseReviewScreen(Course selectedCourse, User currentUser, String previousScene) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("CourseReviewScreen.fxml"));
-            Parent root = loader.load();
-
-            CourseReviewController controller = loader.getController();
-            controller.setDatabaseDriver();
-            controller.setApplication(this);
+            CourseReviewController controller = showScreen(COURSE_REVIEW_SCREEN, "Course Review Application - Course Review");
             controller.setCurrentCourseAndUser(selectedCourse, currentUser, previousScene);
-
-            Scene scene = new Scene(root);
-            primaryStage.setScene(scene);
-            primaryStage.setTitle("Course Review Application - Course Review");
         } catch (IOException ignored) {
         }
     }
 
     public void switchToMyReviewsScreen(User currentUser) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("MyReviewsScreen.fxml"));
-            Parent root = loader.load();
-
-            MyReviewsController controller = loader.getController();
-            controller.setDatabaseDriver(databaseDriver);
-            controller.setApplication(this);
+            MyReviewsController controller = showScreen(MY_REVIEWS_SCREEN, "Course Review Application - My Reviews");
             controller.setCurrentUser(currentUser);
-
-            Scene scene = new Scene(root);
-            primaryStage.setScene(scene);
-            primaryStage.setTitle("Course Review Application - My Reviews");
         } catch (IOException ignored) {
         }
     }
 
+    /**
+     * Shows a screen, loading its FXML and wiring its controller only the first time. Later visits reuse the
+     * scene and controller, so the controller must refresh its data when it is handed new state.
+     * @param fxml The FXML file of the screen
+     * @param title The window title for the screen
+     * @return The screen's controller
+     */
+    @SuppressWarnings("unchecked")
+    private <C> C showScreen(String fxml, String title) throws IOException {
+        Screen screen = screens.get(fxml);
+        if (screen == null) {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxml));
+            Parent root = loader.load();
+            screen = new Screen(new Scene(root), loader.getController());
+            setUpController(screen.controller());
+            screens.put(fxml, screen);
+        }
+        primaryStage.setScene(screen.scene());
+        primaryStage.setTitle(title);
+        return (C) screen.controller();
+    }
+
+    private void setUpController(Object controller) {
+        if (controller instanceof LoginController loginController) {
+            loginController.setDatabaseDriver(databaseDriver);
+            loginController.setApplication(this);
+        } else if (controller instanceof CourseSearchController searchController) {
+            searchController.setApplication(this);
+            searchController.setDatabaseDriver(databaseDriver);
+        } else if (controller instanceof CourseReviewController reviewController) {
+            reviewController.setDatabaseDriver(databaseDriver);
+            reviewController.setApplication(this);
+        } else if (controller instanceof MyReviewsController myReviewsController) {
+            myReviewsController.setDatabaseDriver(databaseDriver);
+            myReviewsController.setApplication(this);
+        }
+    }
+
+    /**
+     * A loaded screen, kept for the life of the application
+     */
+    private record Screen(Scene scene, Object controller) {
+    }
+
     @Override
     public void stop() {
         // Close the database connection when the application is stopped
         if (databaseDriver != null) {
+            // Commit queued review writes before the connections close
+            ReviewWriteQueue.shutdownIfStarted();
+            AsyncDatabaseDriver.shutdownIfStarted();
+            DatabaseMetrics.getInstance().shutdown();
+            // The window may close before the background connect has finished
+            if (!databaseDriver.isConnected()) {
+                return;
+            }
             try {
                 databaseDriver.disconnect();
             } catch (SQLException e) {
@@ -3,13 +3,15 @@ package edu.virginia.sde.reviews;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 
-import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.util.List;
 import java.util.Optional;
 
 public class CourseReviewController {
 
+    private static final String REVIEWS_REQUEST = "courseReviews";
+    private static final String SUMMARY_REQUEST = "courseRatingSummary";
+    private static final int REVIEW_PAGE_SIZE = 50;
+
     @FXML
     private Label courseInfoLabel, averageRatingLabel, messageLabel;
     @FXML
@@ -22,45 +24,114 @@ public class CourseReviewController {
     private Course currentCourse;
     private User currentUser;
     private DatabaseDriver dbDriver;
+    private AsyncDatabaseDriver asyncDriver;
+    private ReviewWriteQueue reviewWriteQueue;
     private CourseReviewApplication application;
     private String previousScene;
     private boolean editMode = false;
+    private ReviewPage.Cursor nextReviewsCursor;
+    private boolean loadingReviews = false;
+
+    public void initialize() {
+        reviewsListView.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(Review review, boolean empty) {
+                super.updateItem(review, empty);
+                setText(empty || review == null ? null : review.toString());
+                // Fetch the next page once the last loaded review scrolls into view
+                if (!empty && getIndex() == lv.getItems().size() - 1) {
+                    loadMoreReviews();
+                }
+            }
+        });
+    }
 
     public void setApplication(CourseReviewApplication application) {
         this.application = application;
     }
 
-    public void setDatabaseDriver() {
-        Configuration configuration = new Configuration();
-        this.dbDriver = DatabaseDriver.getInstance(configuration.getDatabaseFilename());
+    public void setDatabaseDriver(DatabaseDriver dbDriver) {
+        this.dbDriver = dbDriver;
+        this.asyncDriver = AsyncDatabaseDriver.getInstance(dbDriver);
+        this.reviewWriteQueue = ReviewWriteQueue.getInstance(dbDriver);
     }
 
     public void setCurrentCourseAndUser(Course course, User user, String previousScene) {
         this.currentCourse = course;
         this.currentUser = user;
         this.previousScene = previousScene;
+        // The screen is reused, so clear what was left from the previous course
+        editMode = false;
+        ratingField.clear();
+        commentField.clear();
+        messageLabel.setText("");
+        averageRatingLabel.setText("");
+        reviewsListView.getItems().clear();
         loadReviews();
     }
 
+    /**
+     * Loads the first page of reviews, replacing the list. Later pages load as the user scrolls.
+     */
     private void loadReviews() {
-        try {
-            List<Review> reviews = dbDriver.getReviewsForCourse(currentCourse);
-            reviewsListView.getItems().setAll(reviews);
-            updateCourseInfo();
-        } catch (SQLException e) {
-            messageLabel.setText("Error loading reviews: " + e.getMessage());
+        nextReviewsCursor = null;
+        loadingReviews = true;
+        AsyncDatabaseDriver.onFxThread(asyncDriver.submitLatest(REVIEWS_REQUEST,
+                        driver -> driver.getReviewsForCourse(driver.resolveCourseId(currentCourse), null, REVIEW_PAGE_SIZE)),
+                page -> {
+                    loadingReviews = false;
+                    reviewsListView.getItems().setAll(page.getReviews());
+                    nextReviewsCursor = page.getNextCursor();
+                    updateCourseInfo();
+                },
+                e -> {
+                    loadingReviews = false;
+                    messageLabel.setText("Error loading reviews: " + e.getMessage());
+                });
+    }
+
+    private void loadMoreReviews() {
+        if (loadingReviews || nextReviewsCursor == null) {
+            return;
         }
+        ReviewPage.Cursor after = nextReviewsCursor;
+        loadingReviews = true;
+        AsyncDatabaseDriver.onFxThread(asyncDriver.submitLatest(REVIEWS_REQUEST,
+                        driver -> driver.getReviewsForCourse(driver.resolveCourseId(currentCourse), after, REVIEW_PAGE_SIZE)),
+                page -> {
+                    loadingReviews = false;
+                    // Ignore a page that belongs to a list reloaded since it was requested
+                    if (after == nextReviewsCursor) {
+                        reviewsListView.getItems().addAll(page.getReviews());
+                        nextReviewsCursor = page.getNextCursor();
+                    }
+                },
+                e -> {
+                    loadingReviews = false;
+                    messageLabel.setText("Error loading reviews: " + e.getMessage());
+                });
     }
 
     private void updateCourseInfo() {
-        try {
-            courseInfoLabel.setText(currentCourse.getSubject() + " " + currentCourse.getCourseNumber()
-                    + ": " + currentCourse.getTitle());
-            double avgRating = dbDriver.calculateAverageReviewForCourse(currentCourse).orElse(0.0);
-            averageRatingLabel.setText(String.format("Average Rating: %.2f", avgRating));
-        } catch (SQLException e) {
-            messageLabel.setText("Error calculating average rating: " + e.getMessage());
+        courseInfoLabel.setText(currentCourse.getSubject() + " " + currentCourse.getCourseNumber()
+                + ": " + currentCourse.getTitle());
+        AsyncDatabaseDriver.onFxThread(asyncDriver.submitLatest(SUMMARY_REQUEST,
+                        driver -> driver.getRatingSummary(driver.resolveCourseId(currentCourse))),
+                summary -> averageRatingLabel.setText(formatRatingSummary(summary)),
+                e -> messageLabel.setText("Error calculating average rating: " + e.getMessage()));
+    }
+
+    private static String formatRatingSummary(RatingSummary summary) {
+        StringBuilder text = new StringBuilder(String.format("Average Rating: %.2f from %d review%s",
+                summary.getAverageRating().orElse(0.0), summary.getReviewCount(),
+                summary.getReviewCount() == 1 ? "" : "s"));
+        summary.getLast30DayAverage().ifPresent(average -> text.append(String.format(", last 30 days: %.2f", average)));
+        summary.getLast90DayAverage().ifPresent(average -> text.append(String.format(", last 90 days: %.2f", average)));
+        text.append("\n");
+        for (int rating = 5; rating >= 1; rating--) {
+            text.append(rating).append("/5: ").append(summary.getCount(rating)).append(rating > 1 ? "   " : "");
         }
+        return text.toString();
     }
 
     @FXML
@@ -70,32 +141,50 @@ public class CourseReviewController {
             return;
         }
 
-        try {
-            Integer rating = parseRating();
-            if (rating == null) return;
-            String comment = commentField.getText();
-
-            Optional<Review> existingReview = dbDriver.getReviewFromUserForCourse(currentUser, currentCourse);
-            Review review = new Review(0, currentUser.getUserID(), currentCourse.getCourseID(),
-                    rating, new Timestamp(System.currentTimeMillis()), comment);
-
-            if (existingReview.isPresent()) {
-                if (!editMode) {
-                    messageLabel.setText("You have already submitted a review for this course.");
-                    return;
-                } else {
-                    dbDriver.editReview(existingReview.get(), review);
-                    messageLabel.setText("Review updated successfully.");
-                }
-            } else {
-                dbDriver.addReview(review);
-                messageLabel.setText("Review submitted successfully.");
-            }
+        Integer rating = parseRating();
+        if (rating == null) return;
+        String comment = commentField.getText();
+
+        Review review = new Review(0, currentUser.getUserID(), currentCourse.getCourseID(),
+                rating, new Timestamp(System.currentTimeMillis()), comment);
+        boolean editing = editMode;
+
+        // The check and the write run together in one queued write, so they cannot interleave with another submission
+        AsyncDatabaseDriver.onFxThread(reviewWriteQueue.submit(driver -> {
+                    Optional<Review> existingReview = driver.getReviewFromUserForCourse(currentUser, currentCourse);
+                    if (existingReview.isPresent()) {
+                        if (!editing) {
+                            return SubmitOutcome.ALREADY_REVIEWED;
+                        }
+                        driver.editReview(existingReview.get(), review);
+                        return SubmitOutcome.UPDATED;
+                    }
+                    driver.addReview(review);
+                    return SubmitOutcome.SUBMITTED;
+                }),
+                outcome -> {
+                    messageLabel.setText(outcome.getMessage());
+                    if (outcome != SubmitOutcome.ALREADY_REVIEWED) {
+                        editMode = false;
+                        loadReviews(); // Reload reviews
+                    }
+                },
+                e -> messageLabel.setText("Error submitting review: " + e.getMessage()));
+    }
 
-            editMode = false;
-            loadReviews(); // Reload reviews
-        } catch (SQLException e) {
-            messageLabel.setText("Error submitting review: " + e.getMessage());
+    private enum SubmitOutcome {
+        SUBMITTED("Review submitted successfully."),
+        UPDATED("Review updated successfully."),
+        ALREADY_REVIEWED("You have already submitted a review for this course.");
+
+        private final String message;
+
+        SubmitOutcome(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
         }
     }
 
@@ -164,13 +253,15 @@ public class CourseReviewController {
             return;
         }
 
-        try {
-            dbDriver.removeReview(currentCourse, currentUser);
-            loadReviews();
-            messageLabel.setText("Review deleted successfully.");
-        } catch (SQLException e) {
-            messageLabel.setText("Error deleting review: " + e.getMessage());
-        }
+        AsyncDatabaseDriver.onFxThread(reviewWriteQueue.submit(driver -> {
+                    driver.removeReview(currentCourse, currentUser);
+                    return null;
+                }),
+                ignored -> {
+                    loadReviews();
+                    messageLabel.setText("Review deleted successfully.");
+                },
+                e -> messageLabel.setText("Error deleting review: " + e.getMessage()));
     }
 
     @FXML
@@ -1,11 +1,13 @@
 package edu.virginia.sde.reviews;
 
+import javafx.animation.PauseTransition;
 import javafx.fxml.FXML;
+import javafx.geometry.Side;
 import javafx.scene.control.*;
 import javafx.event.ActionEvent;
+import javafx.util.Duration;
 
-import java.sql.SQLException;
-import java.util.*;
+import java.util.List;
 import java.util.stream.Collectors;
 
 public class CourseSearchController {
@@ -19,8 +21,23 @@ public class CourseSearchController {
     @FXML
     private Label messageLabel;
 
+    private static final String SEARCH_REQUEST = "courseSearch";
+    private static final String SUBJECT_COMPLETION_REQUEST = "subjectCompletion";
+    private static final String SIMILAR_COURSES_REQUEST = "similarCourses";
+    private static final int MAX_SUBJECT_SUGGESTIONS = 8;
+    // How long typing must pause before the search runs
+    private static final Duration SEARCH_DELAY = Duration.millis(250);
+
     private DatabaseDriver dbDriver;
+    private AsyncDatabaseDriver asyncDriver;
     private CourseReviewApplication application;
+    private final PauseTransition searchDelay = new PauseTransition(SEARCH_DELAY);
+    private final ContextMenu subjectSuggestions = new ContextMenu();
+
+    // The last search shown, refined in memory when the next search narrows it
+    private CourseSearchCriteria lastCriteria;
+    private CourseSort lastSort;
+    private List<Course> lastResults;
 
     private User currentUser;
 
@@ -30,6 +47,7 @@ public class CourseSearchController {
 
     public void setDatabaseDriver(DatabaseDriver dbDriver) {
         this.dbDriver = dbDriver;
+        this.asyncDriver = AsyncDatabaseDriver.getInstance(dbDriver);
     }
 
     public void setCurrentUser(User user) {
@@ -38,97 +56,179 @@ public class CourseSearchController {
 
     @FXML
     public void initialize() {
-        Configuration configuration = new Configuration();
-        dbDriver = DatabaseDriver.getInstance(configuration.getDatabaseFilename());
-        try {
-            dbDriver.connect();
+        // Every keystroke restarts the delay, so the search runs once typing pauses
+        searchDelay.setOnFinished(event -> searchAsYouType());
+        for (TextField field : List.of(searchSubjectField, searchNumberField, searchTitleField)) {
+            field.textProperty().addListener((observable, oldText, newText) -> searchDelay.playFromStart());
+        }
+    }
+
+    /**
+     * Reloads the courses for the current search, since ratings may have changed while the screen was hidden
+     */
+    public void refresh() {
+        messageLabel.setText("");
+        forgetLastSearch();
+        if (searchSubjectField.getText().isBlank() && searchNumberField.getText().isBlank()
+                && searchTitleField.getText().isBlank()) {
             loadCourses();
-        } catch (SQLException e) {
-            messageLabel.setText("Unable to connect to database.");
+        } else {
+            handleSearch(null);
         }
     }
 
     private void loadCourses() {
-        try {
-            List<Course> courses = dbDriver.getAllCoursesWithRatings();
-            coursesListView.getItems().setAll(courses);
-        } catch (SQLException e) {
-            messageLabel.setText("Unable to load courses.");
-        }
+        AsyncDatabaseDriver.onFxThread(asyncDriver.submitLatest(SEARCH_REQUEST, DatabaseDriver::getAllCoursesWithRatings),
+                courses -> {
+                    coursesListView.getItems().setAll(courses);
+                    // All courses in ID order, which only a search without a sort could refine
+                    lastCriteria = new CourseSearchCriteria("", null, "");
+                    lastSort = null;
+                    lastResults = courses;
+                },
+                e -> messageLabel.setText("Unable to load courses."));
     }
 
     @FXML
     protected void handleSearch(ActionEvent event) {
-        try {
-            String subject = searchSubjectField.getText().trim().toUpperCase();
-            String numberStr = searchNumberField.getText().trim();
-            String title = searchTitleField.getText().trim();
-
-            if (subject.isEmpty() && numberStr.isEmpty() && title.isEmpty()) {
-                // No search criteria
-                messageLabel.setText("Please enter at least one search criteria.");
-                // Show all courses
-                coursesListView.getItems().setAll(dbDriver.getAllCoursesWithRatings());
-                return;
-
-            } else if (!subject.isEmpty() && !subject.matches("[A-Z]{2,4}")) {
-                messageLabel.setText("Invalid subject input. Please enter a 4 letter subject code.");
-                return;
-            } else if (!numberStr.isEmpty() && numberStr.length() != 4) {
-                messageLabel.setText("Invalid course number. Please enter a 4 digit course number.");
-                return;
-            } else if (title.length() > 50) {
-                messageLabel.setText("Title cannot be longer than 50 characters.");
-                return;
-            }
+        searchDelay.stop();
+        CourseSearchCriteria criteria = readCriteria(true);
+        if (criteria == null) {
+            return;
+        }
+        if (criteria.isEmpty()) {
+            // No search criteria
+            messageLabel.setText("Please enter at least one search criteria.");
+            // Show all courses
+            loadCourses();
+            return;
+        }
+        search(criteria);
+    }
 
-            var filteredCourses = dbDriver.getAllCoursesWithRatings();
+    /**
+     * Runs the search once typing pauses. Input that is not a valid search yet, such as a partly typed
+     * course number, leaves the results as they are.
+     */
+    private void searchAsYouType() {
+        suggestSubjects();
+        CourseSearchCriteria criteria = readCriteria(false);
+        if (criteria == null) {
+            return;
+        }
+        messageLabel.setText("");
+        if (criteria.isEmpty()) {
+            loadCourses();
+        } else {
+            search(criteria);
+        }
+    }
 
-            if (!subject.isEmpty()) {
-                // Fetch courses by subject
-                filteredCourses = filteredCourses.stream()
-                        .filter(course -> course.getSubject().equalsIgnoreCase(subject))
-                        .sorted(Comparator.comparingInt(Course::getCourseNumber))
-                        .collect(Collectors.toList());
-            }
+    /**
+     * Reads the search fields
+     * @param showErrors Whether to explain invalid input in the message label
+     * @return The criteria, or null if the fields do not make a valid search
+     */
+    private CourseSearchCriteria readCriteria(boolean showErrors) {
+        String subject = searchSubjectField.getText().trim().toUpperCase();
+        String numberStr = searchNumberField.getText().trim();
+        String title = searchTitleField.getText().trim();
 
-            if (!title.isEmpty()) {
-                // Fetch courses by title
-                filteredCourses = filteredCourses.stream()
-                        .filter(course -> course.getTitle().toUpperCase().contains(title.toUpperCase()))
-                        .sorted(Comparator.comparingInt(Course::getCourseNumber))
-                        .collect(Collectors.toList());
+        String error = null;
+        if (!subject.isEmpty() && !subject.matches("[A-Z]{2,4}")) {
+            error = "Invalid subject input. Please enter a 4 letter subject code.";
+        } else if (!numberStr.isEmpty() && !numberStr.matches("\\d{4}")) {
+            error = "Invalid course number. Please enter a 4 digit course number.";
+        } else if (title.length() > 50) {
+            error = "Title cannot be longer than 50 characters.";
+        }
+        if (error != null) {
+            if (showErrors) {
+                messageLabel.setText(error);
             }
+            return null;
+        }
+        Integer number = numberStr.isEmpty() ? null : Integer.parseInt(numberStr);
+        return new CourseSearchCriteria(subject, number, title);
+    }
 
-            if (!numberStr.isEmpty()) {
-                // Fetch courses by number
-                int number = Integer.parseInt(numberStr);
-                filteredCourses = filteredCourses.stream()
-                        .filter(course -> course.getCourseNumber() == number)
-                        .sorted(Comparator.comparing(Course::getSubject).thenComparingInt(Course::getCourseNumber))
-                        .collect(Collectors.toList());
-            }
+    /**
+     * Shows the courses matching the criteria. A search that narrows the last one filters its results in memory
+     * instead of querying the database, as long as the filtered results are in the order the database would give.
+     * That holds for the fixed sorts, but relevance scores change with the title text, so a title search is only
+     * refined when its title is the same as the last one's. Either way, a newer search cancels this one if it is
+     * still pending.
+     */
+    private void search(CourseSearchCriteria criteria) {
+        CourseSort sort = criteria.hasTitle() ? CourseSort.RELEVANCE : CourseSort.COURSE_NUMBER;
+        List<Course> previousResults = lastResults;
+        boolean refine = previousResults != null && sort == lastSort && criteria.isNarrowingOf(lastCriteria)
+                && (sort != CourseSort.RELEVANCE || criteria.getTitle().equals(lastCriteria.getTitle()));
+        AsyncDatabaseDriver.onFxThread(asyncDriver.submitLatest(SEARCH_REQUEST, driver -> refine
+                        ? previousResults.stream().filter(criteria::matches).collect(Collectors.toList())
+                        : driver.searchCourses(criteria, sort, 0, 0)),
+                filteredCourses -> {
+                    coursesListView.getItems().setAll(filteredCourses);
+                    // No courses found
+                    messageLabel.setText(filteredCourses.isEmpty() ? "No courses found." : "");
+                    lastCriteria = criteria;
+                    lastSort = sort;
+                    lastResults = filteredCourses;
+                    if (filteredCourses.isEmpty() && criteria.hasTitle()) {
+                        suggestSimilarCourse(criteria.getTitle());
+                    }
+                },
+                e -> messageLabel.setText("Unable to search courses."));
+    }
 
-            filteredCourses.sort(Comparator.comparingInt(Course::getCourseNumber));
+    /**
+     * Offers the subjects that start with what is typed in the subject field, filling the field when one is picked
+     */
+    private void suggestSubjects() {
+        String prefix = searchSubjectField.getText().trim().toUpperCase();
+        if (prefix.isEmpty() || !searchSubjectField.isFocused()) {
+            subjectSuggestions.hide();
+            return;
+        }
+        AsyncDatabaseDriver.onFxThread(asyncDriver.submitLatest(SUBJECT_COMPLETION_REQUEST,
+                        driver -> driver.completeSubject(prefix, MAX_SUBJECT_SUGGESTIONS)),
+                subjects -> {
+                    subjectSuggestions.getItems().clear();
+                    for (String subject : subjects) {
+                        if (!subject.equals(prefix)) {
+                            MenuItem item = new MenuItem(subject);
+                            item.setOnAction(event -> searchSubjectField.setText(subject));
+                            subjectSuggestions.getItems().add(item);
+                        }
+                    }
+                    if (subjectSuggestions.getItems().isEmpty()) {
+                        subjectSuggestions.hide();
+                    } else if (!subjectSuggestions.isShowing()) {
+                        subjectSuggestions.show(searchSubjectField, Side.BOTTOM, 0, 0);
+                    }
+                },
+                e -> subjectSuggestions.hide());
+    }
 
-            if (filteredCourses.isEmpty()) {
-                // No courses found
-                messageLabel.setText("No courses found.");
-                return;
-            }else {
-                coursesListView.getItems().setAll(filteredCourses);
-            }
+    /**
+     * Suggests the course with the most similar title after a title search found nothing
+     */
+    private void suggestSimilarCourse(String title) {
+        AsyncDatabaseDriver.onFxThread(asyncDriver.submitLatest(SIMILAR_COURSES_REQUEST,
+                        driver -> driver.findSimilarCourses(title, 1)),
+                courses -> {
+                    // Skip the suggestion if a newer search has found courses since
+                    if (!courses.isEmpty() && coursesListView.getItems().isEmpty()) {
+                        messageLabel.setText("No courses found. Did you mean \"" + courses.get(0).getTitle() + "\"?");
+                    }
+                },
+                e -> { });
+    }
 
-            // Remove duplicates if any criteria overlap
-            coursesListView.getItems().setAll(filteredCourses.stream().distinct().collect(Collectors.toList()));
-            messageLabel.setText("");
-        } catch (SQLException e) {
-            // Handle SQL Exception
-            messageLabel.setText("Unable to search courses.");
-        } catch (NumberFormatException e) {
-            // Handle case where the number field is not a valid integer
-            messageLabel.setText("Invalid course number. Please enter a 4 digit course number.");
-        }
+    private void forgetLastSearch() {
+        lastCriteria = null;
+        lastSort = null;
+        lastResults = null;
     }
 
     @FXML
@@ -160,15 +260,22 @@ public class CourseSearchController {
             int number = Integer.parseInt(numberStr);
             Course newCourse = new Course(0, subject, number, title, null);
 
-            if (!dbDriver.courseAlreadyExists(subject, number, title)) {
-                dbDriver.addCourse(newCourse);
-                loadCourses(); // Reload the courses list
-                messageLabel.setText("Course added successfully.");
-            } else {
-                messageLabel.setText("Course already exists.");
-            }
-        } catch (SQLException e) {
-            messageLabel.setText("Unable to add course.");
+            AsyncDatabaseDriver.onFxThread(asyncDriver.submit(driver -> {
+                        if (driver.courseAlreadyExists(subject, number, title)) {
+                            return false;
+                        }
+                        driver.addCourse(newCourse);
+                        return true;
+                    }),
+                    added -> {
+                        if (added) {
+                            loadCourses(); // Reload the courses list
+                            messageLabel.setText("Course added successfully.");
+                        } else {
+                            messageLabel.setText("Course already exists.");
+                        }
+                    },
+                    e -> messageLabel.setText("Unable to add course."));
         } catch (NumberFormatException e) {
             messageLabel.setText("Invalid course number. Please enter a 4 digit course number.");
         }
@@ -187,6 +294,15 @@ public class CourseSearchController {
 
     @FXML
     protected void handleLogOut(ActionEvent event) {
+        // The screen is kept for the next user, so leave nothing of this user's session on it
+        searchSubjectField.clear();
+        searchNumberField.clear();
+        searchTitleField.clear();
+        searchDelay.stop();
+        subjectSuggestions.hide();
+        forgetLastSearch();
+        coursesListView.getItems().clear();
+        messageLabel.setText("");
 
         if (this.application != null) {
             application.switchToLoginScreen();
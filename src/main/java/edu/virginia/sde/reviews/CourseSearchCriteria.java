@@ -0,0 +1,131 @@
+package edu.virginia.sde.reviews;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The filters entered on the course search screen. Empty filters match every course.
+ */
+public class CourseSearchCriteria {
+    private final String subject;        // matched exactly, stored upper case e.g. "CS"
+    private final Integer courseNumber;  // matched exactly, null for any number
+    private final String title;          // each word matched as a case-insensitive word prefix
+    private final List<String> titleWords;
+
+    public CourseSearchCriteria(String subject, Integer courseNumber, String title) {
+        this.subject = subject == null ? "" : subject.trim().toUpperCase();
+        this.courseNumber = courseNumber;
+        this.title = title == null ? "" : title.trim();
+        this.titleWords = words(this.title);
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public Integer getCourseNumber() {
+        return courseNumber;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean hasSubject() {
+        return !subject.isEmpty();
+    }
+
+    public boolean hasCourseNumber() {
+        return courseNumber != null;
+    }
+
+    public boolean hasTitle() {
+        return !title.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return !hasSubject() && !hasCourseNumber() && !hasTitle();
+    }
+
+    /**
+     * Checks a course against these criteria in memory, matching titles like the full-text index does:
+     * every word of the title criteria must begin a word of the course title, ignoring case and accents.
+     * A title without words is matched as a case-insensitive substring.
+     * @param course The course to check
+     * @return True if a search with these criteria would return the course
+     */
+    public boolean matches(Course course) {
+        if (hasSubject() && !subject.equals(course.getSubject())) {
+            return false;
+        }
+        if (hasCourseNumber() && courseNumber != course.getCourseNumber()) {
+            return false;
+        }
+        if (!hasTitle()) {
+            return true;
+        }
+        if (titleWords.isEmpty()) {
+            return course.getTitle().toLowerCase(Locale.ROOT).contains(title.toLowerCase(Locale.ROOT));
+        }
+        List<String> courseWords = words(course.getTitle());
+        for (String word : titleWords) {
+            if (courseWords.stream().noneMatch(courseWord -> courseWord.startsWith(word))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether every course matching these criteria also matches the previous criteria, so these
+     * results can be found by filtering the previous results with {@link #matches(Course)}. This holds when
+     * a filter was added, or when the title was only typed further, which can add words or lengthen the last word.
+     * @param previous The criteria of an earlier search
+     * @return True if these criteria match a subset of the courses the previous criteria match
+     */
+    public boolean isNarrowingOf(CourseSearchCriteria previous) {
+        if (previous.hasSubject() && !previous.subject.equals(subject)) {
+            return false;
+        }
+        if (previous.hasCourseNumber() && !previous.courseNumber.equals(courseNumber)) {
+            return false;
+        }
+        if (!previous.hasTitle()) {
+            return true;
+        }
+        // Titles without words use a substring match, which a word-prefix match does not narrow
+        return !previous.titleWords.isEmpty() && !titleWords.isEmpty()
+                && fold(title).startsWith(fold(previous.title));
+    }
+
+    /**
+     * Splits text into lower case words without accents, the way the full-text index tokenizes titles
+     */
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : fold(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Lower cases text and strips its accents, as the full-text index does before matching
+     */
+    static String fold(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return "CourseSearchCriteria{" +
+                "subject='" + subject + '\'' +
+                ", courseNumber=" + courseNumber +
+                ", title='" + title + '\'' +
+                '}';
+    }
+}
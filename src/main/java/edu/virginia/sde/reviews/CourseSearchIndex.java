@@ -0,0 +1,285 @@
+package edu.virginia.sde.reviews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An in-memory index for autocomplete and fuzzy matching on the search screen. It has a trie over course subjects,
+ * which completes subject names, and a trigram index over course titles, which finds the IDs of courses with
+ * similar titles to be resolved through the catalogue. Courses are held only as IDs in primitive arrays, never as
+ * Course objects, so the index costs a few ints per title trigram. Course numbers are not indexed here; searches
+ * by subject and number go through the indexes of {@link CourseCatalogCache}.
+ * <p>
+ * Titles are folded like {@link CourseSearchCriteria} folds them and split into words. Each word is padded with
+ * a space on both sides and cut into trigrams, so "Data" gives " da", "dat", "ata" and "ta ".
+ */
+public class CourseSearchIndex {
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * The least share of trigrams a title must have in common with the text to count as similar
+     */
+    public static final double MIN_SIMILARITY = 0.3;
+
+    // Subject trie, one entry per node, children chained in character order
+    private int nodeCount = 1;
+    private char[] nodeChars = new char[INITIAL_CAPACITY];
+    private int[] firstChild = filled(INITIAL_CAPACITY, NONE);
+    private int[] nextSibling = filled(INITIAL_CAPACITY, NONE);
+    private int[] nodeCourseCounts = new int[INITIAL_CAPACITY];
+
+    private int courseCount;
+
+    // Title trigrams, each with a posting list of the IDs of the courses whose title has it
+    private final LongIntMap postingByTrigram = new LongIntMap(1024);
+    private int postingCount;
+    private int[][] postings = new int[INITIAL_CAPACITY][];
+    private int[] postingSizes = new int[INITIAL_CAPACITY];
+    private int[] trigramCountById = new int[INITIAL_CAPACITY];
+
+    // Scratch space for fuzzy matching, reused between calls
+    private int[] sharedTrigramsById = new int[INITIAL_CAPACITY];
+    private int[] touchedIds = new int[INITIAL_CAPACITY];
+
+    public CourseSearchIndex() {
+    }
+
+    /**
+     * @param courses The courses to index, e.g. from {@link DatabaseDriver#getAllCoursesWithRatings()}
+     */
+    public CourseSearchIndex(List<Course> courses) {
+        courses.forEach(this::add);
+    }
+
+    /**
+     * Adds a course to the index. Each course may only be added once.
+     * @param course The course, with the ID it has in the database
+     */
+    public synchronized void add(Course course) {
+        int id = course.getCourseID();
+        if (id < 0) {
+            throw new IllegalArgumentException("Course ID must not be negative");
+        }
+        courseCount++;
+        addSubject(course.getSubject());
+        addTitle(course.getTitle(), id);
+    }
+
+    /**
+     * @return The number of courses indexed
+     */
+    public synchronized int size() {
+        return courseCount;
+    }
+
+    /**
+     * Lists the subjects that start with a prefix, for completing the subject field
+     * @param prefix The start of a subject, in any case
+     * @param limit The most subjects to return
+     * @return The matching subjects in alphabetical order
+     */
+    public synchronized List<String> completeSubject(String prefix, int limit) {
+        List<String> subjects = new ArrayList<>();
+        String upper = prefix.trim().toUpperCase();
+        int node = findNode(upper);
+        if (node != NONE && limit > 0) {
+            collectSubjects(node, new StringBuilder(upper), subjects, limit);
+        }
+        return subjects;
+    }
+
+    /**
+     * Finds the titles most like the text, for suggesting a course when a search finds nothing. Similarity is
+     * the share of trigrams the title and the text have in common, so misspellings and missing words still match.
+     * @param text The title text searched for
+     * @param limit The most courses to return
+     * @return The IDs of courses at least {@link #MIN_SIMILARITY} similar, most similar first
+     */
+    public synchronized int[] findSimilarTitles(String text, int limit) {
+        long[] trigrams = trigrams(text);
+        if (trigrams.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        int touchedCount = 0;
+        for (long trigram : trigrams) {
+            int slot = postingByTrigram.get(trigram);
+            if (slot == LongIntMap.MISSING) {
+                continue;
+            }
+            int[] posting = postings[slot];
+            for (int i = 0; i < postingSizes[slot]; i++) {
+                int id = posting[i];
+                if (sharedTrigramsById[id]++ == 0) {
+                    if (touchedCount == touchedIds.length) {
+                        touchedIds = Arrays.copyOf(touchedIds, touchedCount * 2);
+                    }
+                    touchedIds[touchedCount++] = id;
+                }
+            }
+        }
+        // Pack the similarity above the inverted ID, so sorting orders by similarity, then by lowest ID
+        long[] ranked = new long[touchedCount];
+        int rankedCount = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touchedIds[i];
+            double similarity = 2.0 * sharedTrigramsById[id] / (trigrams.length + trigramCountById[id]);
+            sharedTrigramsById[id] = 0;
+            if (similarity >= MIN_SIMILARITY) {
+                ranked[rankedCount++] = ((long) (similarity * 1_000_000) << 32) | (Integer.MAX_VALUE - id);
+            }
+        }
+        Arrays.sort(ranked, 0, rankedCount);
+        int[] ids = new int[Math.min(limit, rankedCount)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Integer.MAX_VALUE - (int) ranked[rankedCount - 1 - i];
+        }
+        return ids;
+    }
+
+    private void addSubject(String subject) {
+        int node = ROOT;
+        for (char c : subject.toUpperCase().toCharArray()) {
+            int child = findChild(node, c);
+            node = child != NONE ? child : addChild(node, c);
+        }
+        nodeCourseCounts[node]++;
+    }
+
+    private void addTitle(String title, int id) {
+        long[] trigrams = trigrams(title);
+        if (id >= trigramCountById.length) {
+            int capacity = Math.max(id + 1, trigramCountById.length * 2);
+            trigramCountById = Arrays.copyOf(trigramCountById, capacity);
+            sharedTrigramsById = Arrays.copyOf(sharedTrigramsById, capacity);
+        }
+        trigramCountById[id] = trigrams.length;
+        for (long trigram : trigrams) {
+            int slot = postingByTrigram.get(trigram);
+            if (slot == LongIntMap.MISSING) {
+                if (postingCount == postings.length) {
+                    postings = Arrays.copyOf(postings, postingCount * 2);
+                    postingSizes = Arrays.copyOf(postingSizes, postingCount * 2);
+                }
+                slot = postingCount++;
+                postingByTrigram.put(trigram, slot);
+            }
+            postings[slot] = append(postings[slot], postingSizes[slot], id);
+            postingSizes[slot]++;
+        }
+    }
+
+    private int findNode(String path) {
+        int node = ROOT;
+        for (int i = 0; i < path.length() && node != NONE; i++) {
+            node = findChild(node, path.charAt(i));
+        }
+        return node;
+    }
+
+    private int findChild(int node, char c) {
+        for (int child = firstChild[node]; child != NONE && nodeChars[child] <= c; child = nextSibling[child]) {
+            if (nodeChars[child] == c) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    private int addChild(int parent, char c) {
+        if (nodeCount == nodeChars.length) {
+            int capacity = nodeCount * 2;
+            nodeChars = Arrays.copyOf(nodeChars, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            Arrays.fill(firstChild, nodeCount, capacity, NONE);
+            Arrays.fill(nextSibling, nodeCount, capacity, NONE);
+            nodeCourseCounts = Arrays.copyOf(nodeCourseCounts, capacity);
+        }
+        int node = nodeCount++;
+        nodeChars[node] = c;
+        // Keep siblings in character order so completions come out alphabetically
+        if (firstChild[parent] == NONE || nodeChars[firstChild[parent]] > c) {
+            nextSibling[node] = firstChild[parent];
+            firstChild[parent] = node;
+        } else {
+            int previous = firstChild[parent];
+            while (nextSibling[previous] != NONE && nodeChars[nextSibling[previous]] < c) {
+                previous = nextSibling[previous];
+            }
+            nextSibling[node] = nextSibling[previous];
+            nextSibling[previous] = node;
+        }
+        return node;
+    }
+
+    private boolean collectSubjects(int node, StringBuilder path, List<String> subjects, int limit) {
+        if (nodeCourseCounts[node] > 0) {
+            subjects.add(path.toString());
+            if (subjects.size() >= limit) {
+                return false;
+            }
+        }
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            path.append(nodeChars[child]);
+            boolean more = collectSubjects(child, path, subjects, limit);
+            path.setLength(path.length() - 1);
+            if (!more) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cuts text into distinct trigrams, each word padded with a space on both sides
+     */
+    private static long[] trigrams(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : CourseSearchCriteria.fold(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(" " + word + " ");
+            }
+        }
+        int total = 0;
+        for (String word : words) {
+            total += Math.max(0, word.length() - 2);
+        }
+        long[] trigrams = new long[total];
+        int count = 0;
+        for (String word : words) {
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                trigrams[count++] = ((long) word.charAt(i) << 32) | ((long) word.charAt(i + 1) << 16) | word.charAt(i + 2);
+            }
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * Appends a value to the used front of an array, growing the array if it is full
+     * @return The array holding size + 1 values, which may be a new array
+     */
+    private static int[] append(int[] array, int size, int value) {
+        if (array == null) {
+            array = new int[4];
+        } else if (size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+        }
+        array[size] = value;
+        return array;
+    }
+
+    private static int[] filled(int length, int value) {
+        int[] array = new int[length];
+        Arrays.fill(array, value);
+        return array;
+    }
+}
@@ -0,0 +1,56 @@
+package edu.virginia.sde.reviews;
+
+import java.util.Comparator;
+
+/**
+ * The orders course search results can be returned in. Every order ends with the course ID
+ * so that pages of results are stable.
+ */
+public enum CourseSort {
+    COURSE_NUMBER("c.CourseNumber, c.Subject, c.Title, c.ID",
+            Comparator.comparingInt(Course::getCourseNumber)
+                    .thenComparing(Course::getSubject)
+                    .thenComparing(Course::getTitle)
+                    .thenComparingInt(Course::getCourseID)),
+    SUBJECT("c.Subject, c.CourseNumber, c.Title, c.ID",
+            Comparator.comparing(Course::getSubject)
+                    .thenComparingInt(Course::getCourseNumber)
+                    .thenComparing(Course::getTitle)
+                    .thenComparingInt(Course::getCourseID)),
+    TITLE("c.Title, c.Subject, c.CourseNumber, c.ID",
+            Comparator.comparing(Course::getTitle)
+                    .thenComparing(Course::getSubject)
+                    .thenComparingInt(Course::getCourseNumber)
+                    .thenComparingInt(Course::getCourseID)),
+    RATING("AverageRating IS NULL, AverageRating DESC, c.Subject, c.CourseNumber, c.ID",
+            Comparator.comparing(Course::getAverageRating, Comparator.nullsLast(Comparator.<Double>reverseOrder()))
+                    .thenComparing(Course::getSubject)
+                    .thenComparingInt(Course::getCourseNumber)
+                    .thenComparingInt(Course::getCourseID)),
+    /**
+     * Best full-text title match first. Only applies when searching by title; otherwise the same as COURSE_NUMBER.
+     */
+    RELEVANCE("f.rank, c.ID", COURSE_NUMBER.comparator);
+
+    private final String orderBy;
+    private final Comparator<Course> comparator;
+
+    CourseSort(String orderBy, Comparator<Course> comparator) {
+        this.orderBy = orderBy;
+        this.comparator = comparator;
+    }
+
+    /**
+     * @return The ORDER BY expression for this sort, over the Courses alias c
+     */
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * @return The same order as {@link #getOrderBy()}, for sorting courses in memory
+     */
+    public Comparator<Course> getComparator() {
+        return comparator;
+    }
+}
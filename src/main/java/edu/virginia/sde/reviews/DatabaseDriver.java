@@ -1,74 +1,380 @@
 package edu.virginia.sde.reviews;
 
 import java.sql.*;
+import java.time.Duration;
 import java.util.*;
 
 public class DatabaseDriver {
 
     private static DatabaseDriver instance;
     private final String sqliteFilename;
-    private Connection connection;
+    private ConnectionPool pool;
+    private volatile boolean schemaChecked;
+    private final CourseCatalogCache catalogCache = new CourseCatalogCache();
+    private final UserCache userCache = new UserCache();
+    private volatile RatingColumnStore ratingStore;
+    private volatile CourseLeaderboards leaderboards;
+    private volatile CourseSearchIndex searchIndex;
+    // Cache patches waiting for the open transaction to commit, only touched while holding the writer
+    private final List<Runnable> patchesAfterCommit = new ArrayList<>();
 
     public DatabaseDriver (String sqlListDatabaseFilename) {
         this.sqliteFilename = sqlListDatabaseFilename;
     }
 
-    public static DatabaseDriver getInstance(String sqliteFilename) {
+    /**
+     * @return The shared driver, recording the metrics of its methods in {@link DatabaseMetrics#getInstance()}
+     */
+    public static synchronized DatabaseDriver getInstance(String sqliteFilename) {
         if (instance == null) {
-            instance = new DatabaseDriver(sqliteFilename);
+            instance = new InstrumentedDatabaseDriver(sqliteFilename, DatabaseMetrics.getInstance());
         }
         return instance;
     }
 
     /**
-     * Opens a connection to the database
+     * Opens the pool of connections to the database. The pool stays open until {@link #disconnect()},
+     * so calling this again while connected reuses the existing connections.
      */
-    public void connect() throws SQLException {
-        if (connection != null && !connection.isClosed()) {
-            connection.close();
+    public synchronized void connect() throws SQLException {
+        if (pool != null && !pool.isClosed()) {
+            return;
         }
-        connection = DriverManager.getConnection("jdbc:sqlite:" + sqliteFilename);
-        //the next line enables foreign key enforcement - do not delete/comment out
-        connection.createStatement().execute("PRAGMA foreign_keys = ON");
-        //the next line disables auto-commit - do not delete/comment out
-        connection.setAutoCommit(true);
+        pool = new ConnectionPool(sqliteFilename);
+        schemaChecked = false;
+        invalidateCaches();
+    }
+
+    /**
+     * @return True if the connections are open
+     */
+    public synchronized boolean isConnected() {
+        return pool != null && !pool.isClosed();
     }
 
     /**
-     * Commit all changes since the connection was opened OR since the last commit/rollback
+     * Commit all changes on the writer connection since the last commit/rollback. Does nothing outside
+     * a transaction, since every statement then commits on its own.
      */
     public void commit() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            throw new IllegalStateException("The connection is not opened");
+        try (PooledConnection connection = pool.writer()) {
+            if (!connection.getConnection().getAutoCommit()) {
+                connection.getConnection().commit();
+                applyPatchesAfterCommit();
+            }
         }
-        connection.commit();
     }
 
     /**
-     * Rollback to the last commit, or when the connection was opened
+     * Rollback the writer connection to the last commit. Does nothing outside a transaction.
      */
     public void rollback() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            throw new IllegalStateException("The connection is not opened");
+        try (PooledConnection connection = pool.writer()) {
+            if (!connection.getConnection().getAutoCommit()) {
+                connection.getConnection().rollback();
+                patchesAfterCommit.clear();
+            }
         }
-        connection.rollback();
+    }
+
+    /**
+     * Runs work in one transaction on the writer connection, committing if it returns and rolling back if
+     * it throws. Driver methods the work calls on this thread join the transaction rather than committing
+     * on their own, and a call made while a transaction is already open joins that transaction.
+     * The in-memory caches take the work's changes once it commits, and never see them if it rolls back.
+     * @param work The work to run against this driver
+     * @return The result of the work
+     */
+    public <T> T inTransaction(AsyncDatabaseDriver.DatabaseCall<T> work) throws SQLException {
+        try (PooledConnection connection = pool.writer()) {
+            Connection jdbc = connection.getConnection();
+            if (!jdbc.getAutoCommit()) {
+                return work.call(this);
+            }
+            jdbc.setAutoCommit(false);
+            try {
+                T result = work.call(this);
+                jdbc.commit();
+                applyPatchesAfterCommit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                jdbc.rollback();
+                patchesAfterCommit.clear();
+                throw e;
+            } finally {
+                jdbc.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Runs work under a savepoint inside the current transaction, so a failure undoes only that work and
+     * leaves the rest of the transaction intact
+     * @param work The work to run against this driver
+     * @return The result of the work
+     * @throws IllegalStateException If no transaction is open on this thread
+     */
+    public <T> T inSavepoint(AsyncDatabaseDriver.DatabaseCall<T> work) throws SQLException {
+        try (PooledConnection connection = pool.writer()) {
+            Connection jdbc = connection.getConnection();
+            if (jdbc.getAutoCommit()) {
+                throw new IllegalStateException("A savepoint needs an open transaction");
+            }
+            int patches = patchesAfterCommit.size();
+            Savepoint savepoint = jdbc.setSavepoint();
+            try {
+                T result = work.call(this);
+                jdbc.releaseSavepoint(savepoint);
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                // The work's cache patches are still queued, so dropping them undoes it in memory too
+                jdbc.rollback(savepoint);
+                jdbc.releaseSavepoint(savepoint);
+                patchesAfterCommit.subList(patches, patchesAfterCommit.size()).clear();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Applies a cache patch once the write it reflects is committed: straight away outside a transaction,
+     * otherwise when the open transaction commits. Until then readers may load the pre-commit data into a cache,
+     * which the patch then corrects or, through the cache version, rejects. A rolled back write drops its
+     * patches, so the caches never need reloading after a failed write.
+     * @param connection The writer connection holding the write
+     * @param patch The change to make to the caches
+     */
+    private void afterCommit(PooledConnection connection, Runnable patch) throws SQLException {
+        if (isInTransaction(connection)) {
+            patchesAfterCommit.add(patch);
+        } else {
+            patch.run();
+        }
+    }
+
+    private void applyPatchesAfterCommit() {
+        List<Runnable> patches = new ArrayList<>(patchesAfterCommit);
+        patchesAfterCommit.clear();
+        try {
+            patches.forEach(Runnable::run);
+        } catch (RuntimeException e) {
+            // The write is committed but the caches may be half patched, so reload them instead
+            System.err.println("Error patching the caches: " + e.getMessage());
+            invalidateCaches();
+        }
+    }
+
+    /**
+     * Reads inside a transaction see its uncommitted writes, which may still be rolled back, so the caches are
+     * only loaded from reads outside one
+     */
+    private static boolean isInTransaction(PooledConnection connection) throws SQLException {
+        return !connection.getConnection().getAutoCommit();
     }
 
     /**
      * Ends the connection to the database
      */
-    public void disconnect() throws SQLException {
-        if (connection == null || connection.isClosed()) {
+    public synchronized void disconnect() throws SQLException {
+        if (pool == null || pool.isClosed()) {
             throw new IllegalStateException("The connection is not opened");
         }
-        connection.close();
+        pool.close();
+        invalidateCaches();
+    }
+
+    /**
+     * Drops the in-memory copies of database contents, so they are reloaded on their next use
+     */
+    private void invalidateCaches() {
+        catalogCache.invalidate();
+        userCache.invalidate();
+        leaderboards = null;
+        searchIndex = null;
+        ratingStore = null;
+    }
+
+    /**
+     * @return The in-memory course catalogue, whose hit ratio can be monitored
+     */
+    public CourseCatalogCache getCourseCatalogCache() {
+        return catalogCache;
+    }
+
+    /**
+     * @return The cache of users, whose hit ratio can be monitored
+     */
+    public UserCache getUserCache() {
+        return userCache;
+    }
+
+    /**
+     * Gets the column store of every review's rating, loading it from the Reviews table on first use.
+     * The review write methods keep it up to date afterwards.
+     * <p>
+     * The load scans every review while holding the writer, so it costs O(reviews) and stalls writes until it
+     * finishes. The application loads the store in the background at startup; after a cache invalidation, the
+     * next caller pays for the load.
+     * @return The rating column store
+     */
+    public RatingColumnStore getRatingColumnStore() throws SQLException {
+        RatingColumnStore store = ratingStore;
+        if (store != null) {
+            return store;
+        }
+        // Holding the writer keeps writes out while the store loads, so none are missed
+        try (PooledConnection connection = pool.writer()) {
+            if (ratingStore == null) {
+                RatingColumnStore loaded = new RatingColumnStore();
+                String query = "SELECT UserID, CourseID, Rating, EntryTime FROM Reviews";
+                try (Statement statement = connection.getConnection().createStatement();
+                     ResultSet results = statement.executeQuery(query)) {
+                    while (results.next()) {
+                        loaded.put(results.getInt(1), results.getInt(2), results.getInt(3), results.getLong(4));
+                    }
+                }
+                if (isInTransaction(connection)) {
+                    return loaded;
+                }
+                ratingStore = loaded;
+            }
+            return ratingStore;
+        }
+    }
+
+    /**
+     * Gets the best courses on a leaderboard. The leaderboards are loaded from the CourseRatingStats aggregates on
+     * first use and kept up to date by the review write methods, so this costs O(limit) once a leaderboard is built.
+     * @param type The leaderboard
+     * @param subject The subject to rank courses within, or null to rank the whole catalogue
+     * @param limit The most courses to return
+     * @return Up to limit courses that have reviews, best first
+     */
+    public List<LeaderboardEntry> getLeaderboard(LeaderboardType type, String subject, int limit) throws SQLException {
+        return getCourseLeaderboards().getTop(type, subject, limit);
+    }
+
+    private CourseLeaderboards getCourseLeaderboards() throws SQLException {
+        CourseLeaderboards current = leaderboards;
+        if (current != null) {
+            return current;
+        }
+        // Holding the writer keeps writes out while the leaderboards load, so none are missed
+        try (PooledConnection connection = pool.writer()) {
+            if (leaderboards == null) {
+                RatingColumnStore store = getRatingColumnStore();
+                List<CourseRatingTotals> courses = new ArrayList<>();
+                long totalReviews = 0;
+                long totalRatings = 0;
+                String query = "SELECT s.CourseID, c.Subject, s.ReviewCount, s.RatingSum " +
+                        "FROM CourseRatingStats s JOIN Courses c ON c.ID = s.CourseID WHERE s.ReviewCount > 0";
+                try (Statement statement = connection.getConnection().createStatement();
+                     ResultSet results = statement.executeQuery(query)) {
+                    while (results.next()) {
+                        CourseRatingTotals course = new CourseRatingTotals(results.getInt(1), results.getString(2),
+                                results.getInt(3), results.getLong(4));
+                        courses.add(course);
+                        totalReviews += course.reviewCount();
+                        totalRatings += course.ratingSum();
+                    }
+                }
+                // The prior is the catalogue's mean rating, weighted as much as the reviews of an average course
+                double priorMean = totalReviews == 0 ? 3 : (double) totalRatings / totalReviews;
+                double priorWeight = courses.isEmpty() ? 1 : Math.max(1, (double) totalReviews / courses.size());
+                CourseLeaderboards loaded = new CourseLeaderboards(priorMean, priorWeight, System.currentTimeMillis());
+                for (CourseRatingTotals course : courses) {
+                    loaded.update(course.courseId(), course.subject(), course.reviewCount(), course.ratingSum(),
+                            loaded.getTrendWeight(store, course.courseId()));
+                }
+                if (isInTransaction(connection)) {
+                    return loaded;
+                }
+                leaderboards = loaded;
+            }
+            return leaderboards;
+        }
+    }
+
+    private record CourseRatingTotals(int courseId, String subject, int reviewCount, long ratingSum) {
+    }
+
+    /**
+     * Gets the in-memory index of course subjects and title trigrams, which serves {@link #completeSubject(String, int)}
+     * and {@link #findSimilarCourses(String, int)}, building it from the catalogue on first use.
+     * {@link #addCourse(Course)} keeps it up to date afterwards.
+     * @return The course search index
+     */
+    public CourseSearchIndex getCourseSearchIndex() throws SQLException {
+        CourseSearchIndex index = searchIndex;
+        if (index != null) {
+            return index;
+        }
+        // Holding the writer keeps courses from being added while the index is built, so none are missed
+        try (PooledConnection connection = pool.writer()) {
+            if (searchIndex == null) {
+                CourseSearchIndex built = new CourseSearchIndex(getAllCoursesWithRatings());
+                if (isInTransaction(connection)) {
+                    return built;
+                }
+                searchIndex = built;
+            }
+            return searchIndex;
+        }
+    }
+
+    /**
+     * Lists the subjects that start with a prefix, for completing the subject field of the search screen
+     * @param prefix The start of a subject, in any case
+     * @param limit The most subjects to return
+     * @return The matching subjects in alphabetical order
+     */
+    public List<String> completeSubject(String prefix, int limit) throws SQLException {
+        return getCourseSearchIndex().completeSubject(prefix, limit);
+    }
+
+    /**
+     * Finds the courses whose titles are most like the text, for suggesting a course when a title search
+     * finds nothing, e.g. "Sofware Developmnt" finds "Software Development"
+     * @param title The title text searched for
+     * @param limit The most courses to return
+     * @return The most similar courses, most similar first
+     */
+    public List<Course> findSimilarCourses(String title, int limit) throws SQLException {
+        List<Course> courses = new ArrayList<>();
+        for (int courseId : getCourseSearchIndex().findSimilarTitles(title, limit)) {
+            getCourseById(courseId).ifPresent(courses::add);
+        }
+        return courses;
     }
 
     /**
-     * Creates the Courses, Users, and Reviews tables in the database
+     * @return The number of statement lookups served from the statement caches
+     */
+    public long getStatementCacheHits() {
+        return pool == null ? 0 : pool.getStatementCacheHits();
+    }
+
+    /**
+     * @return The number of statement lookups that had to prepare a new statement
+     */
+    public long getStatementCacheMisses() {
+        return pool == null ? 0 : pool.getStatementCacheMisses();
+    }
+
+    /**
+     * Creates the Courses, Users, and Reviews tables in the database, then upgrades the schema
+     * to the latest version with {@link SchemaMigrator}. The checks run once per connection; later calls return
+     * straight away.
      */
     public void createTables() throws SQLException {
-        try (Statement statement = connection.createStatement()) {
+        if (schemaChecked) {
+            return;
+        }
+        try (PooledConnection connection = pool.writer();
+             Statement statement = connection.getConnection().createStatement()) {
+            if (schemaChecked) {
+                return;
+            }
             String createCoursesTable = "CREATE TABLE IF NOT EXISTS Courses (" +
                     "ID INTEGER PRIMARY KEY AUTOINCREMENT, " +
                     "Subject VARCHAR(255) NOT NULL, " +
@@ -92,28 +398,78 @@ public class DatabaseDriver {
                     "FOREIGN KEY (UserID) REFERENCES Users(ID) ON DELETE CASCADE, " +
                     "FOREIGN KEY (CourseID) REFERENCES Courses(ID) ON DELETE CASCADE)";
             statement.executeUpdate(createReviewsTable);
+            new SchemaMigrator(connection.getConnection()).migrate();
+            schemaChecked = true;
         }
     }
 
 
     /**
-     * Adds a course to the database
+     * Adds a course to the database and sets its ID to the generated one
      * @param course The course to add
      */
     public void addCourse(Course course) throws SQLException {
-        try {
-            if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
+        try (PooledConnection connection = pool.writer()) {
             String command = "INSERT INTO Courses(Subject, CourseNumber, Title) VALUES(?, ?, ?)";
-            try (PreparedStatement statement = connection.prepareStatement(command)) {
-                statement.setString(1, course.getSubject());
-                statement.setInt(2, course.getCourseNumber());
-                statement.setString(3, course.getTitle());
-                statement.executeUpdate();
+            PreparedStatement statement = connection.prepare(command);
+            statement.setString(1, course.getSubject());
+            statement.setInt(2, course.getCourseNumber());
+            statement.setString(3, course.getTitle());
+            statement.executeUpdate();
+
+            try (ResultSet rs = connection.prepare("SELECT last_insert_rowid()").executeQuery()) {
+                if (rs.next()) {
+                    course.setCourseID(rs.getInt(1));
+                }
             }
-        } catch (SQLException e) {
-            rollback();
-            throw e;
+            Course stored = new Course(course.getCourseID(), course.getSubject(), course.getCourseNumber(),
+                    course.getTitle(), null);
+            afterCommit(connection, () -> {
+                catalogCache.put(stored);
+                CourseSearchIndex index = searchIndex;
+                if (index != null) {
+                    index.add(stored);
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds courses to the database in one transaction, skipping any course whose subject, course number,
+     * and title are already in the database
+     * @param courses The courses to add
+     * @return The number of courses added
+     */
+    public int addCourses(List<Course> courses) throws SQLException {
+        if (courses.isEmpty()) {
+            return 0;
         }
+        int added = inTransaction(driver -> {
+            try (PooledConnection connection = pool.writer()) {
+                String command = "INSERT INTO Courses(Subject, CourseNumber, Title) VALUES(?, ?, ?) " +
+                        "ON CONFLICT(Subject, CourseNumber, Title) DO NOTHING";
+                PreparedStatement statement = connection.prepare(command);
+                for (Course course : courses) {
+                    statement.setString(1, course.getSubject());
+                    statement.setInt(2, course.getCourseNumber());
+                    statement.setString(3, course.getTitle());
+                    statement.addBatch();
+                }
+                int count = 0;
+                for (int rows : statement.executeBatch()) {
+                    count += Math.max(rows, 0);
+                }
+                if (count > 0) {
+                    // The new IDs are not known here, so reload the catalogue and its index on the next read
+                    afterCommit(connection, () -> {
+                        catalogCache.invalidate();
+                        searchIndex = null;
+                    });
+                }
+                return count;
+            }
+        });
+        return added;
     }
 
     /**
@@ -124,11 +480,15 @@ public class DatabaseDriver {
      * @return True if the course already exists, false otherwise
      */
     public boolean courseAlreadyExists(String subject, int courseNumber, String title) throws SQLException {
-        if (connection.isClosed()) {
-            throw new IllegalStateException("Connection is not open");
+        Optional<List<Course>> cached = catalogCache.findBySubjectAndNumber(
+                new CourseSearchCriteria(subject, courseNumber, null));
+        if (cached.isPresent()) {
+            return cached.get().stream()
+                    .anyMatch(course -> course.getSubject().equals(subject) && course.getTitle().equals(title));
         }
-        String query = "SELECT COUNT(*) FROM Courses WHERE Subject = ? AND CourseNumber = ? AND Title = ?";
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (PooledConnection connection = pool.reader()) {
+            String query = "SELECT COUNT(*) FROM Courses WHERE Subject = ? AND CourseNumber = ? AND Title = ?";
+            PreparedStatement statement = connection.prepare(query);
             statement.setString(1, subject);
             statement.setInt(2, courseNumber);
             statement.setString(3, title);
@@ -137,61 +497,188 @@ public class DatabaseDriver {
                     return resultSet.getInt(1) > 0;
                 }
             }
+            return false;
         }
-        return false;
     }
 
+    /**
+     * Gets every course along with its average rating. Served from the {@link CourseCatalogCache} once it is
+     * loaded, otherwise read from the CourseRatingStats aggregates and cached.
+     * @return All courses in ID order, with a null average rating for courses that have no reviews
+     */
     public List<Course> getAllCoursesWithRatings() throws SQLException {
+        Optional<List<Course>> cached = catalogCache.getAll();
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        long version = catalogCache.getVersion();
         List<Course> courses = new ArrayList<>();
-        String query = "SELECT c.ID, c.Subject, c.CourseNumber, c.Title, AVG(r.Rating) as AverageRating " +
+        // Dividing by a ReviewCount of 0 yields NULL, the same as AVG over no reviews
+        String query = "SELECT c.ID, c.Subject, c.CourseNumber, c.Title, " +
+                "CAST(s.RatingSum AS REAL) / s.ReviewCount AS AverageRating " +
                 "FROM Courses c " +
-                "LEFT JOIN Reviews r ON c.ID = r.CourseID " +
-                "GROUP BY c.ID, c.Subject, c.CourseNumber, c.Title";
-
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            ResultSet results = statement.executeQuery();
-            while (results.next()) {
-                int id = results.getInt("ID");
-                String subject = results.getString("Subject");
-                int courseNumber = results.getInt("CourseNumber");
-                String title = results.getString("Title");
-                Double averageRating = results.getDouble("AverageRating");
-                if (results.wasNull()) {
-                    averageRating = null; // Set to null if no reviews
+                "LEFT JOIN CourseRatingStats s ON s.CourseID = c.ID " +
+                "ORDER BY c.ID";
+
+        try (PooledConnection connection = pool.reader()) {
+            try (ResultSet results = connection.prepare(query).executeQuery()) {
+                while (results.next()) {
+                    courses.add(readCourseWithRating(results));
                 }
-                Course newCourse = new Course(id, subject, courseNumber, title, averageRating);
-                courses.add(newCourse);
+            }
+            if (!isInTransaction(connection)) {
+                catalogCache.load(courses, version);
             }
         }
         return courses;
     }
 
+    /**
+     * Searches for courses matching the given criteria in a single query, so only matching rows are read.
+     * Titles are matched through the CoursesFts full-text index: every word of the title criteria must be
+     * the prefix of a word in the course title, e.g. "soft dev" matches "Software Development".
+     * Searches without a title are served from the {@link CourseCatalogCache} when it is loaded.
+     * @param criteria The subject, course number, and title to filter by
+     * @param sort The order to return the courses in
+     * @param limit The maximum number of courses to return, or 0 for no limit
+     * @param offset The number of matching courses to skip
+     * @return The matching courses along with their average ratings
+     */
+    public List<Course> searchCourses(CourseSearchCriteria criteria, CourseSort sort, int limit, int offset) throws SQLException {
+        if (!criteria.hasTitle()) {
+            Optional<List<Course>> cached = catalogCache.findBySubjectAndNumber(criteria);
+            if (cached.isPresent()) {
+                return sortAndPage(cached.get(), sort, limit, offset);
+            }
+        }
+        try (PooledConnection connection = pool.reader()) {
+            String titleMatch = criteria.hasTitle() ? toFullTextQuery(criteria.getTitle()) : null;
+            boolean fullText = titleMatch != null;
+            if (sort == CourseSort.RELEVANCE && !fullText) {
+                sort = CourseSort.COURSE_NUMBER;
+            }
+
+            StringBuilder query = new StringBuilder("SELECT c.ID, c.Subject, c.CourseNumber, c.Title, " +
+                    "CAST(s.RatingSum AS REAL) / s.ReviewCount AS AverageRating ");
+            if (fullText) {
+                query.append("FROM CoursesFts f JOIN Courses c ON c.ID = f.rowid ");
+            } else {
+                query.append("FROM Courses c ");
+            }
+            query.append("LEFT JOIN CourseRatingStats s ON s.CourseID = c.ID WHERE 1 = 1");
+            if (fullText) {
+                query.append(" AND CoursesFts MATCH ?");
+            } else if (criteria.hasTitle()) {
+                // The title has no words to match on, fall back to a substring match on the raw text
+                query.append(" AND c.Title LIKE ? ESCAPE '\\'");
+            }
+            if (criteria.hasSubject()) {
+                query.append(" AND c.Subject = ?");
+            }
+            if (criteria.hasCourseNumber()) {
+                query.append(" AND c.CourseNumber = ?");
+            }
+            query.append(" ORDER BY ").append(sort.getOrderBy()).append(" LIMIT ? OFFSET ?");
+
+            PreparedStatement statement = connection.prepare(query.toString());
+            int parameter = 1;
+            if (fullText) {
+                statement.setString(parameter++, titleMatch);
+            } else if (criteria.hasTitle()) {
+                statement.setString(parameter++, "%" + escapeLike(criteria.getTitle()) + "%");
+            }
+            if (criteria.hasSubject()) {
+                statement.setString(parameter++, criteria.getSubject());
+            }
+            if (criteria.hasCourseNumber()) {
+                statement.setInt(parameter++, criteria.getCourseNumber());
+            }
+            statement.setInt(parameter++, limit > 0 ? limit : -1); // a negative LIMIT means no limit
+            statement.setInt(parameter, Math.max(offset, 0));
+
+            List<Course> courses = new ArrayList<>();
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    courses.add(readCourseWithRating(results));
+                }
+            }
+            return courses;
+        }
+    }
+
+    /**
+     * Converts free text into an FTS5 query that requires every word as a prefix, e.g. soft dev becomes "soft"* "dev"*
+     * @return The FTS5 query, or null if the text contains no words
+     */
+    private static String toFullTextQuery(String text) {
+        StringBuilder match = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                // Quoting each word keeps FTS5 operators such as AND, OR, NOT and * in user input literal
+                match.append('"').append(word).append("\"*");
+            }
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    private static List<Course> sortAndPage(List<Course> courses, CourseSort sort, int limit, int offset) {
+        courses.sort(sort.getComparator());
+        int from = Math.min(Math.max(offset, 0), courses.size());
+        int to = limit > 0 ? Math.min(from + limit, courses.size()) : courses.size();
+        return new ArrayList<>(courses.subList(from, to));
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static Course readCourseWithRating(ResultSet results) throws SQLException {
+        int id = results.getInt("ID");
+        String subject = results.getString("Subject");
+        int courseNumber = results.getInt("CourseNumber");
+        String title = results.getString("Title");
+        Double averageRating = results.getDouble("AverageRating");
+        if (results.wasNull()) {
+            averageRating = null; // Set to null if no reviews
+        }
+        return new Course(id, subject, courseNumber, title, averageRating);
+    }
+
 
 
     /**
-     * Gets a course by its ID
+     * Gets a course by its ID, from the {@link CourseCatalogCache} when it holds the course
      * @param courseID The ID of the course
      * @return The course with the given ID, or an empty Optional if no course exists with that ID
      */
     public Optional<Course> getCourseById(int courseID) throws SQLException {
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
-        String query = "SELECT * FROM Courses WHERE ID = ?";
-        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-            preparedStatement.setInt(1, courseID);
-            try (ResultSet results = preparedStatement.executeQuery()) {
-                if (results.next()) {
-                    int id = results.getInt("ID");
-                    String subject = results.getString("Subject");
-                    int courseNumber = results.getInt("CourseNumber");
-                    String title = results.getString("Title");
-                    Course newCourse = new Course(id, subject, courseNumber, title, null);
-                    return Optional.of(newCourse);
-                } else {
-                    return Optional.empty();
+        Optional<Course> cached = catalogCache.getById(courseID);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        try (PooledConnection connection = pool.reader()) {
+            String query = "SELECT * FROM Courses WHERE ID = ?";
+            try {
+                PreparedStatement preparedStatement = connection.prepare(query);
+                preparedStatement.setInt(1, courseID);
+                try (ResultSet results = preparedStatement.executeQuery()) {
+                    if (results.next()) {
+                        int id = results.getInt("ID");
+                        String subject = results.getString("Subject");
+                        int courseNumber = results.getInt("CourseNumber");
+                        String title = results.getString("Title");
+                        Course newCourse = new Course(id, subject, courseNumber, title, null);
+                        return Optional.of(newCourse);
+                    } else {
+                        return Optional.empty();
+                    }
                 }
+            } catch (SQLException e) {
+                throw e;
             }
-        } catch (SQLException e) {
-            throw e;
         }
     }
 
@@ -204,53 +691,98 @@ public class DatabaseDriver {
      * or an empty Optional if no course exists with that subject, course number, and title
      */
     public int getCourseId(String subject, int number, String title) throws SQLException{
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
-        try{
-            PreparedStatement statement = connection.prepareStatement("SELECT * from Courses where Subject=? AND CourseNumber=? AND Title=?");
-            statement.setString(1, subject);
-            statement.setInt(2, number);
-            statement.setString(3, title);
-            ResultSet results = statement.executeQuery();
-
-            if (results.next()) {
-                return results.getInt("ID");
+        try (PooledConnection connection = pool.reader()) {
+            try{
+                PreparedStatement statement = connection.prepare("SELECT * from Courses where Subject=? AND CourseNumber=? AND Title=?");
+                statement.setString(1, subject);
+                statement.setInt(2, number);
+                statement.setString(3, title);
+                try (ResultSet results = statement.executeQuery()) {
+                    if (results.next()) {
+                        return results.getInt("ID");
+                    }
+                }
+            }catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-            statement.close();
-        }catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw new SQLException("No course with subject, courseNumber, and title found.");
         }
-        throw new SQLException("No course with subject, courseNumber, and title found.");
     }
 
     /**
-     * Adds a user to the database
-     * @param user The user to add
+     * Resolves the ID of a course, using the ID the course already carries when it was loaded from the database
+     * and only looking it up by subject, course number, and title when it is unknown
+     * @param course The course to resolve
+     * @return The ID of the course
+     */
+    public int resolveCourseId(Course course) throws SQLException {
+        if (course.getCourseID() > 0) {
+            return course.getCourseID();
+        }
+        return getCourseId(course.getSubject(), course.getCourseNumber(), course.getTitle());
+    }
+
+    /**
+     * Adds a user to the database, hashing their password with {@link PasswordHasher} on the calling thread.
+     * Callers on the UI path should hash with {@link PasswordHasher#hashAsync(String)} and call
+     * {@link #addUserWithHash(String, String)} instead.
+     * @param user The user to add, with their plain-text password
      */
     public void addUser(User user) throws SQLException{
-        try {
-            if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
+        // Hash before taking the writer, which hashing would hold for its whole duration
+        User stored = addUserWithHash(user.getUsername(), PasswordHasher.getInstance().hash(user.getPassword()));
+        user.setUserID(stored.getUserID());
+    }
+
+    /**
+     * Adds a user whose password is already hashed
+     * @param username The username of the user
+     * @param passwordHash The hash from {@link PasswordHasher#hash(String)}
+     * @return The stored user, with its new ID
+     */
+    public User addUserWithHash(String username, String passwordHash) throws SQLException {
+        if (!PasswordHasher.isHash(passwordHash)) {
+            throw new IllegalArgumentException("Passwords must be stored hashed");
+        }
+        try (PooledConnection connection = pool.writer()) {
             String command = "INSERT INTO Users(Username, Password) VALUES(?, ?)";
-            PreparedStatement statement = connection.prepareStatement(command);
+            PreparedStatement statement = connection.prepare(command);
 
             // Set parameters
-            statement.setString(1, user.getUsername());
-            statement.setString(2, user.getPassword());
+            statement.setString(1, username);
+            statement.setString(2, passwordHash);
 
             // Execute the update
             statement.executeUpdate();
-            statement.close();
 
+            User stored = new User(username, passwordHash);
             // Get the last inserted ID
-            Statement lastIdStatement = connection.createStatement();
-            ResultSet rs = lastIdStatement.executeQuery("SELECT last_insert_rowid()");
-            if (rs.next()) {
-                int generatedId = rs.getInt(1); // Retrieve the generated ID
-                user.setUserID(generatedId); // Update the User object with the new ID
+            try (ResultSet rs = connection.prepare("SELECT last_insert_rowid()").executeQuery()) {
+                if (rs.next()) {
+                    stored.setUserID(rs.getInt(1));
+                }
             }
-            lastIdStatement.close();
-        } catch (SQLException e) {
-            rollback();
-            throw e;
+            // The cache keeps its own copy
+            afterCommit(connection, () -> userCache.put(stored));
+            return stored;
+        }
+    }
+
+    /**
+     * Replaces the stored password hash of a user, e.g. to upgrade it to the current work factor
+     * @param userId The ID of the user
+     * @param passwordHash The new hash from {@link PasswordHasher#hash(String)}
+     */
+    public void updatePasswordHash(int userId, String passwordHash) throws SQLException {
+        if (!PasswordHasher.isHash(passwordHash)) {
+            throw new IllegalArgumentException("Passwords must be stored hashed");
+        }
+        try (PooledConnection connection = pool.writer()) {
+            PreparedStatement statement = connection.prepare("UPDATE Users SET Password = ? WHERE ID = ?");
+            statement.setString(1, passwordHash);
+            statement.setInt(2, userId);
+            statement.executeUpdate();
+            afterCommit(connection, () -> userCache.remove(userId));
         }
     }
 
@@ -260,28 +792,7 @@ public class DatabaseDriver {
      * @return True if the user exists, false otherwise
      */
     public boolean userExists(String username)throws SQLException{
-        if (connection.isClosed()) {
-            throw new IllegalStateException("Connection is not open");
-        }
-        boolean exists = false;
-        String query = "SELECT COUNT(*) FROM Users WHERE Username = ?";
-
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setString(1, username);
-
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    int count = resultSet.getInt(1);
-                    exists = count > 0;
-                }
-            }catch (SQLException e) {
-                throw new RuntimeException(e);
-            }
-        }catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-
-        return exists;
+        return getUserByUsername(username).isPresent();
     }
 
     /**
@@ -290,20 +801,21 @@ public class DatabaseDriver {
      * @return The ID for the user
      */
     public int getUserId(String username) throws SQLException{
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
-        try{
-            PreparedStatement statement = connection.prepareStatement("SELECT * from Users where Username=?");
-            statement.setString(1, username);
-            ResultSet results = statement.executeQuery();
+        return getUserByUsername(username).map(User::getUserID).orElseThrow(() ->
+                new SQLException("No user with username: " + username + " found."));
+    }
 
-            if (results.next()) {
-                return results.getInt("ID");
-            }
-            statement.close();
-        }catch (SQLException e) {
-            throw new RuntimeException(e);
+    /**
+     * Resolves the ID of a user, using the ID the user already carries when it was loaded from the database
+     * and only looking it up by username when it is unknown
+     * @param user The user to resolve
+     * @return The ID of the user
+     */
+    public int resolveUserId(User user) throws SQLException {
+        if (user.getUserID() > 0) {
+            return user.getUserID();
         }
-        throw new SQLException("No user with username: " + username + "found.");
+        return getUserId(user.getUsername());
     }
 
     /**
@@ -312,48 +824,35 @@ public class DatabaseDriver {
      * @return The user with the given username, or an empty Optional if no user exists with that username
      */
     public Optional<User> getUserByUsername(String username) throws SQLException{
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
-        try{
-            PreparedStatement statement = connection.prepareStatement("SELECT * from Users where username=?");
+        Optional<User> cached = userCache.getByUsername(username);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long version = userCache.getVersion();
+        try (PooledConnection connection = pool.reader()) {
+            PreparedStatement statement = connection.prepare("SELECT ID, Username, Password FROM Users WHERE Username = ?");
             statement.setString(1, username);
-            ResultSet results = statement.executeQuery();
-
-            if (results.next()) {
-                int id = results.getInt("ID");
-                String username2 = results.getString("Username");
-                String password = results.getString("Password");
-                User user = new User(username2, password);
-                user.setUserID(id);
-                return Optional.of(user);
-            }
-            statement.close();
-        }catch (SQLException e) {
-            throw new RuntimeException(e);
+            try (ResultSet results = statement.executeQuery()) {
+                if (results.next()) {
+                    User user = new User(results.getString("Username"), results.getString("Password"));
+                    user.setUserID(results.getInt("ID"));
+                    if (!isInTransaction(connection)) {
+                        userCache.load(user, version);
+                    }
+                    return Optional.of(user);
+                }
+            }
+            return Optional.empty();
         }
-        return Optional.empty();
     }
 
     /**
-     * Gets the password for a user
+     * Gets the stored password for a user, a {@link PasswordHasher} hash unless it predates hashing
      * @param user The user to get the password for
-     * @return The password for the user, or an empty Optional if the user does not exist
+     * @return The stored password for the user, or an empty Optional if the user does not exist
      */
     public Optional<String> getPasswordForUser(User user) throws SQLException{
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
-        try{
-            PreparedStatement statement = connection.prepareStatement("SELECT * from Users where username=?");
-            statement.setString(1, user.getUsername());
-            ResultSet results = statement.executeQuery();
-
-            if (results.next()) {
-                String password = results.getString("Password");
-                return Optional.of(password);
-            }
-            statement.close();
-        }catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-        return Optional.empty();
+        return getUserByUsername(user.getUsername()).map(User::getPassword);
     }
 
     /**
@@ -361,26 +860,34 @@ public class DatabaseDriver {
      * @param review The review to add
      */
     public void addReview(Review review) throws SQLException{
-        try {
-            if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
+        try (PooledConnection connection = pool.writer()) {
             String command = "INSERT INTO Reviews(UserID, CourseID, Rating, EntryTime, Comment) " +
                     "VALUES(?, ?, ?, ?, ?)";
-            try (PreparedStatement statement = connection.prepareStatement(command)) {
-                statement.setInt(1, review.getUserID());
-                statement.setInt(2, review.getCourseID());
-                statement.setInt(3, review.getRating());
-                statement.setTimestamp(4, review.getEntryTime());
-                if (review.getComment() != null) {
-                    statement.setString(5, review.getComment());
-                } else {
-                    statement.setNull(5, Types.VARCHAR);
-                }
-                statement.executeUpdate();
+            PreparedStatement statement = connection.prepare(command);
+            statement.setInt(1, review.getUserID());
+            statement.setInt(2, review.getCourseID());
+            statement.setInt(3, review.getRating());
+            statement.setTimestamp(4, review.getEntryTime());
+            if (review.getComment() != null) {
+                statement.setString(5, review.getComment());
+            } else {
+                statement.setNull(5, Types.VARCHAR);
             }
+            statement.executeUpdate();
+            int userId = review.getUserID();
+            int courseId = review.getCourseID();
+            int rating = review.getRating();
+            long entryTimeMillis = epochMillis(review);
+            afterCommit(connection, () -> {
+                RatingColumnStore store = ratingStore;
+                if (store != null) {
+                    store.put(userId, courseId, rating, entryTimeMillis);
+                }
+            });
+            courseRatingsChanged(connection, review.getCourseID());
         } catch (SQLException e) {
             System.err.println("Error in addReview: " + e.getMessage());
             System.err.println("Review details: UserID=" + review.getUserID() + ", CourseID=" + review.getCourseID());
-            rollback();
             throw e;
         }
     }
@@ -391,25 +898,33 @@ public class DatabaseDriver {
      * @param user The user who wrote the review
      */
     public void removeReview(Course course, User user) throws SQLException{
-        if (connection.isClosed()) {
-            throw new IllegalStateException("Connection is not open");
-        }
+        removeReview(resolveCourseId(course), resolveUserId(user));
+    }
 
-        try {
+    /**
+     * Removes a review from the database
+     * @param courseId The ID of the course to remove the review from
+     * @param userId The ID of the user who wrote the review
+     */
+    public void removeReview(int courseId, int userId) throws SQLException{
+        try (PooledConnection connection = pool.writer()) {
             String deleteQuery = "DELETE FROM Reviews WHERE CourseID = ? AND UserID = ?";
-            PreparedStatement statement = connection.prepareStatement(deleteQuery);
-            statement.setInt(1, getCourseId(course.getSubject(), course.getCourseNumber(), course.getTitle()));
-            statement.setInt(2, getUserId(user.getUsername()));
+            PreparedStatement statement = connection.prepare(deleteQuery);
+            statement.setInt(1, courseId);
+            statement.setInt(2, userId);
             int rowsAffected = statement.executeUpdate();
-            statement.close();
 
             if (rowsAffected == 0) {
-                throw new SQLException("No review found for Course ID: " + course.getCourseID()
-                        + " and User ID: " + user.getUserID());
+                throw new SQLException("No review found for Course ID: " + courseId
+                        + " and User ID: " + userId);
             }
-        } catch (SQLException e) {
-            rollback();
-            throw e;
+            afterCommit(connection, () -> {
+                RatingColumnStore store = ratingStore;
+                if (store != null) {
+                    store.remove(userId, courseId);
+                }
+            });
+            courseRatingsChanged(connection, courseId);
         }
     }
 
@@ -419,13 +934,10 @@ public class DatabaseDriver {
      * @param newReview The new review to replace the old review
      */
     public void editReview(Review oldReview, Review newReview) throws SQLException{
-        if (connection.isClosed()) {
-            throw new IllegalStateException("Connection is not open");
-        }
-
         // Update the review
         String updateQuery = "UPDATE Reviews SET Rating = ?, EntryTime = ?, Comment = ? WHERE UserID = ? AND CourseID = ?";
-        try (PreparedStatement updateStatement = connection.prepareStatement(updateQuery)) {
+        try (PooledConnection connection = pool.writer()) {
+            PreparedStatement updateStatement = connection.prepare(updateQuery);
             // Set new values for the review
             updateStatement.setInt(1, newReview.getRating());
             updateStatement.setTimestamp(2, newReview.getEntryTime());
@@ -436,53 +948,133 @@ public class DatabaseDriver {
             }
 
             // Use the User ID and Course ID from the old review to identify the review to update
-            updateStatement.setInt(4, oldReview.getCourseID());
-            updateStatement.setInt(5, oldReview.getUserID());
+            updateStatement.setInt(4, oldReview.getUserID());
+            updateStatement.setInt(5, oldReview.getCourseID());
 
             int rowsAffected = updateStatement.executeUpdate();
             if (rowsAffected == 0) {
                 throw new SQLException("No review found for Course ID: " + oldReview.getCourseID()
                         + " and User ID: " + oldReview.getUserID());
             }
-        } catch (SQLException e) {
-            rollback();
-            throw e;
+            int userId = oldReview.getUserID();
+            int courseId = oldReview.getCourseID();
+            int rating = newReview.getRating();
+            long entryTimeMillis = epochMillis(newReview);
+            afterCommit(connection, () -> {
+                RatingColumnStore store = ratingStore;
+                if (store != null) {
+                    store.put(userId, courseId, rating, entryTimeMillis);
+                }
+            });
+            courseRatingsChanged(connection, oldReview.getCourseID());
         }
     }
 
+    private static long epochMillis(Review review) {
+        return review.getEntryTime() != null ? review.getEntryTime().getTime() : System.currentTimeMillis();
+    }
+
+    /**
+     * Patches the cached average rating and the leaderboard places of a course after one of its reviews changed,
+     * once the rating column store holds the change. Reads through the writer connection so the change being
+     * made is visible. The catalogue is patched once the change commits, since a catalogue load that reads
+     * before the commit sees the old rating.
+     * @param connection The writer connection holding the change
+     * @param courseId The ID of the course whose reviews changed
+     */
+    private void courseRatingsChanged(PooledConnection connection, int courseId) throws SQLException {
+        CourseLeaderboards boards = leaderboards;
+        if (!catalogCache.isLoaded()) {
+            // Drops or fails any catalogue load that read before this change committed
+            afterCommit(connection, catalogCache::invalidate);
+            if (boards == null) {
+                return;
+            }
+        }
+        PreparedStatement statement = connection.prepare("SELECT c.Subject, s.ReviewCount, s.RatingSum " +
+                "FROM Courses c LEFT JOIN CourseRatingStats s ON s.CourseID = c.ID WHERE c.ID = ?");
+        statement.setInt(1, courseId);
+        CourseRatingTotals totals;
+        try (ResultSet results = statement.executeQuery()) {
+            totals = results.next()
+                    ? new CourseRatingTotals(courseId, results.getString(1), results.getInt(2), results.getLong(3))
+                    : new CourseRatingTotals(courseId, null, 0, 0);
+        }
+        afterCommit(connection, () -> {
+            catalogCache.updateAverageRating(courseId, totals.reviewCount() == 0 ? null
+                    : (double) totals.ratingSum() / totals.reviewCount());
+            CourseLeaderboards current = leaderboards;
+            if (current != null) {
+                RatingColumnStore store = ratingStore;
+                if (store == null) {
+                    leaderboards = null;
+                } else {
+                    current.update(courseId, totals.subject(), totals.reviewCount(), totals.ratingSum(),
+                            current.getTrendWeight(store, courseId));
+                }
+            }
+        });
+    }
+
     /**
      * Gets the reviews for a course
      * @param course The course to get the reviews for
      * @return The reviews for the course
      */
     public List<Review> getReviewsForCourse(Course course) throws SQLException{
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
-        List<Review> reviews = new ArrayList<>();
-        try {
-            String query = "SELECT * FROM Reviews WHERE CourseID = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, getCourseId(course.getSubject(),course.getCourseNumber(),course.getTitle())); // Assuming getId() returns the course ID
-
-            ResultSet results = statement.executeQuery();
-            while (results.next()) {
-                int id = results.getInt("ID");
-                int userId = results.getInt("UserID");
-                int courseId = results.getInt("CourseID");
-                int rating = results.getInt("Rating");
-                Timestamp time = results.getTimestamp("EntryTime");
-                String comment = results.getString("Comment");
-                if (results.wasNull()) {
-                    comment = null;
-                }
+        return getReviewsForCourse(resolveCourseId(course));
+    }
 
-                Review review = new Review(id, userId, courseId, rating, time, comment);
-                reviews.add(review);
+    /**
+     * Gets the reviews for a course
+     * @param courseId The ID of the course to get the reviews for
+     * @return The reviews for the course
+     */
+    public List<Review> getReviewsForCourse(int courseId) throws SQLException{
+        try (PooledConnection connection = pool.reader()) {
+            return getReviews(connection, "SELECT * FROM Reviews WHERE CourseID = ?", courseId);
+        }
+    }
+
+    /**
+     * Gets one page of the reviews for a course, newest first
+     * @param courseId The ID of the course to get the reviews for
+     * @param after The cursor from the previous page, or null for the first page
+     * @param pageSize The maximum number of reviews on the page
+     * @return The page of reviews, with the cursor for the next page if there are more
+     */
+    public ReviewPage getReviewsForCourse(int courseId, ReviewPage.Cursor after, int pageSize) throws SQLException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        String query = "SELECT * FROM Reviews WHERE CourseID = ?" +
+                (after != null ? " AND (EntryTime, ID) < (?, ?)" : "") +
+                " ORDER BY EntryTime DESC, ID DESC LIMIT ?";
+        try (PooledConnection connection = pool.reader()) {
+            PreparedStatement statement = connection.prepare(query);
+            int parameter = 1;
+            statement.setInt(parameter++, courseId);
+            if (after != null) {
+                statement.setLong(parameter++, after.entryTimeMillis());
+                statement.setInt(parameter++, after.reviewId());
             }
-            statement.close();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+            // One extra row tells whether there is a next page
+            statement.setInt(parameter, pageSize + 1);
+
+            List<Review> reviews = new ArrayList<>(pageSize + 1);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    setupCourseColumns columns = getSetupCourseColumns(results);
+                    reviews.add(new Review(columns.id(), columns.userId(), columns.courseId(), columns.rating(),
+                            columns.time(), columns.comment()));
+                }
+            }
+            if (reviews.size() <= pageSize) {
+                return new ReviewPage(reviews, null);
+            }
+            reviews.remove(pageSize);
+            return new ReviewPage(reviews, ReviewPage.Cursor.after(reviews.get(pageSize - 1)));
         }
-        return reviews;
     }
 
     /**
@@ -491,29 +1083,64 @@ public class DatabaseDriver {
      * @return The reviews from the user
      */
     public List<Review> getReviewsFromUser(User user) throws SQLException{
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
+        return getReviewsFromUser(resolveUserId(user));
+    }
+
+    /**
+     * Gets the reviews from a user
+     * @param userId The ID of the user who wrote the reviews
+     * @return The reviews from the user
+     */
+    public List<Review> getReviewsFromUser(int userId) throws SQLException{
+        try (PooledConnection connection = pool.reader()) {
+            return getReviews(connection, "SELECT * FROM Reviews WHERE UserID = ?", userId);
+        }
+    }
+
+    /**
+     * Gets the reviews from a user along with the course each review is for, in one query
+     * @param userId The ID of the user who wrote the reviews
+     * @return The reviews from the user, each paired with its course
+     */
+    public List<ReviewWithCourse> getReviewsFromUserWithCourses(int userId) throws SQLException{
+        try (PooledConnection connection = pool.reader()) {
+            List<ReviewWithCourse> reviews = new ArrayList<>();
+            String query = "SELECT r.ID, r.UserID, r.CourseID, r.Rating, r.EntryTime, r.Comment, " +
+                    "c.Subject, c.CourseNumber, c.Title " +
+                    "FROM Reviews r " +
+                    "JOIN Courses c ON c.ID = r.CourseID " +
+                    "WHERE r.UserID = ? " +
+                    "ORDER BY r.ID";
+            PreparedStatement statement = connection.prepare(query);
+            statement.setInt(1, userId);
+
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    setupCourseColumns columns = getSetupCourseColumns(results);
+                    Review review = new Review(columns.id(), columns.userId(), columns.courseId(), columns.rating(),
+                            columns.time(), columns.comment());
+                    Course course = new Course(columns.courseId(), results.getString("Subject"),
+                            results.getInt("CourseNumber"), results.getString("Title"), null);
+                    reviews.add(new ReviewWithCourse(review, course));
+                }
+            }
+            return reviews;
+        }
+    }
+
+    private static List<Review> getReviews(PooledConnection connection, String query, int id) {
         List<Review> reviews = new ArrayList<>();
         try {
-            String query = "SELECT * FROM Reviews WHERE UserID = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, getUserId(user.getUsername())); // Assuming getId() returns the course ID
-
-            ResultSet results = statement.executeQuery();
-            while (results.next()) {
-                int id = results.getInt("ID");
-                int userId = results.getInt("UserID");
-                int courseId = results.getInt("CourseID");
-                int rating = results.getInt("Rating");
-                Timestamp time = results.getTimestamp("EntryTime");
-                String comment = results.getString("Comment");
-                if (results.wasNull()) {
-                    comment = null;
-                }
+            PreparedStatement statement = connection.prepare(query);
+            statement.setInt(1, id);
 
-                Review review = new Review(id, userId, courseId, rating, time, comment);
-                reviews.add(review);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    setupCourseColumns columns = getSetupCourseColumns(results);
+                    reviews.add(new Review(columns.id(), columns.userId(), columns.courseId(), columns.rating(),
+                            columns.time(), columns.comment()));
+                }
             }
-            statement.close();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -527,23 +1154,34 @@ public class DatabaseDriver {
      * @return The review from the user for the course, or an empty Optional if the user has not reviewed the course
      */
     public Optional <Review> getReviewFromUserForCourse(User user, Course course) throws SQLException{
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
-        try {
-            String query = "SELECT * FROM Reviews WHERE UserID = ? AND CourseID = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, getUserId(user.getUsername()));
-            statement.setInt(2, getCourseId(course.getSubject(),course.getCourseNumber(),course.getTitle()));
+        return getReviewFromUserForCourse(resolveUserId(user), resolveCourseId(course));
+    }
+
+    /**
+     * Gets the review from a user for a course
+     * @param userId The ID of the user who wrote the review
+     * @param courseId The ID of the course that was reviewed
+     * @return The review from the user for the course, or an empty Optional if the user has not reviewed the course
+     */
+    public Optional <Review> getReviewFromUserForCourse(int userId, int courseId) throws SQLException{
+        try (PooledConnection connection = pool.reader()) {
+            try {
+                String query = "SELECT * FROM Reviews WHERE UserID = ? AND CourseID = ?";
+                PreparedStatement statement = connection.prepare(query);
+                statement.setInt(1, userId);
+                statement.setInt(2, courseId);
 
-            ResultSet results = statement.executeQuery();
-            while (results.next()) {
-                setupCourseColumns courses = getSetupCourseColumns(results);
-                return Optional.of(new Review(courses.id(), courses.courseId(), courses.userId(), courses.rating(), courses.time(), courses.comment()));
+                try (ResultSet results = statement.executeQuery()) {
+                    if (results.next()) {
+                        setupCourseColumns courses = getSetupCourseColumns(results);
+                        return Optional.of(new Review(courses.id(), courses.userId(), courses.courseId(), courses.rating(), courses.time(), courses.comment()));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-            statement.close();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+            return Optional.empty();
         }
-        return Optional.empty();
     }
 
     private static setupCourseColumns getSetupCourseColumns(ResultSet results) throws SQLException {
@@ -568,40 +1206,91 @@ public class DatabaseDriver {
      * @return The average rating for the course, or an empty OptionalDouble if there are no reviews for the course
      */
     public OptionalDouble calculateAverageReviewForCourse(Course course) throws SQLException{
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
-        try {
-            String query = "SELECT AVG(Rating) AS AverageRating FROM Reviews WHERE CourseID = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
-            statement.setInt(1, getCourseId(course.getSubject(),course.getCourseNumber(),course.getTitle())); // Assuming getId() returns the course ID
-
-            ResultSet results = statement.executeQuery();
-            if (results.next()) {
-                double averageRating = results.getDouble("AverageRating");
-                if (results.wasNull()) {
-                    return OptionalDouble.empty();
+        return calculateAverageReviewForCourse(resolveCourseId(course));
+    }
+
+    /**
+     * Calculates the average rating for a course
+     * @param courseId The ID of the course to calculate the average rating for
+     * @return The average rating for the course, or an empty OptionalDouble if there are no reviews for the course
+     */
+    public OptionalDouble calculateAverageReviewForCourse(int courseId) throws SQLException{
+        try (PooledConnection connection = pool.reader()) {
+            try {
+                String query = "SELECT CAST(RatingSum AS REAL) / ReviewCount AS AverageRating " +
+                        "FROM CourseRatingStats WHERE CourseID = ?";
+                PreparedStatement statement = connection.prepare(query);
+                statement.setInt(1, courseId);
+
+                try (ResultSet results = statement.executeQuery()) {
+                    if (results.next()) {
+                        double averageRating = results.getDouble("AverageRating");
+                        if (results.wasNull()) {
+                            return OptionalDouble.empty();
+                        }
+                        return OptionalDouble.of(Math.round(averageRating * 100.0) / 100.0); // Rounded to two decimal places
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            return OptionalDouble.empty();
+        }
+    }
+
+    /**
+     * Gets the rating statistics of a course: the count, mean, and histogram from its CourseRatingStats row
+     * in one lookup, and the 30 and 90 day means from the {@link RatingColumnStore}. If the store is not loaded
+     * yet, this loads it first; see {@link #getRatingColumnStore()}.
+     * @param courseId The ID of the course
+     * @return The course's rating summary, with zero counts if it has no reviews
+     */
+    public RatingSummary getRatingSummary(int courseId) throws SQLException {
+        int reviewCount = 0;
+        long ratingSum = 0;
+        int[] histogram = new int[5];
+        try (PooledConnection connection = pool.reader()) {
+            String query = "SELECT ReviewCount, RatingSum, Rating1, Rating2, Rating3, Rating4, Rating5 " +
+                    "FROM CourseRatingStats WHERE CourseID = ?";
+            PreparedStatement statement = connection.prepare(query);
+            statement.setInt(1, courseId);
+            try (ResultSet results = statement.executeQuery()) {
+                if (results.next()) {
+                    reviewCount = results.getInt("ReviewCount");
+                    ratingSum = results.getLong("RatingSum");
+                    for (int rating = 1; rating <= 5; rating++) {
+                        histogram[rating - 1] = results.getInt("Rating" + rating);
+                    }
                 }
-                return OptionalDouble.of(Math.round(averageRating * 100.0) / 100.0); // Rounded to two decimal places
             }
-            statement.close();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
-        return OptionalDouble.empty();
+        RatingColumnStore store = getRatingColumnStore();
+        long now = System.currentTimeMillis();
+        return new RatingSummary(courseId, reviewCount, ratingSum, histogram,
+                windowAverage(store, courseId, now - Duration.ofDays(30).toMillis()),
+                windowAverage(store, courseId, now - Duration.ofDays(90).toMillis()));
+    }
+
+    private static OptionalDouble windowAverage(RatingColumnStore store, int courseId, long fromMillis) {
+        double average = store.getAverageRating(courseId, fromMillis, Long.MAX_VALUE);
+        return Double.isNaN(average) ? OptionalDouble.empty() : OptionalDouble.of(average);
     }
 
     /**
      * Clears all data from the tables
      */
     public void clearTables() throws SQLException{
-        if (connection.isClosed()) throw new IllegalStateException("Connection is not open");
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate("DELETE FROM Reviews");
-            statement.executeUpdate("DELETE FROM Users");
-            statement.executeUpdate("DELETE FROM Courses");
-        } catch (SQLException e) {
-            rollback();
-            throw e;
-        }
+        inTransaction(driver -> {
+            try (PooledConnection connection = pool.writer();
+                 Statement statement = connection.getConnection().createStatement()) {
+                statement.executeUpdate("DELETE FROM Reviews");
+                statement.executeUpdate("DELETE FROM CourseRatingStats");
+                statement.executeUpdate("DELETE FROM Users");
+                statement.executeUpdate("DELETE FROM Courses");
+                afterCommit(connection, this::invalidateCaches);
+            }
+            return null;
+        });
     }
 
 }
@@ -0,0 +1,232 @@
+package edu.virginia.sde.reviews;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics for every DatabaseDriver method, recorded by {@link InstrumentedDatabaseDriver}. They are published
+ * as JMX MXBeans under {@value #JMX_DOMAIN}, one for the database as a whole and one per method, and summarised
+ * to the log periodically, slowest methods first by total time.
+ * <p>
+ * JMX registration and the summaries run on a single daemon thread, so they stay off the startup path and the
+ * JavaFX application thread.
+ */
+public class DatabaseMetrics implements DatabaseMetricsMXBean {
+    public static final String JMX_DOMAIN = "edu.virginia.sde.reviews";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseMetrics.class);
+    private static DatabaseMetrics instance;
+
+    private final Map<String, OperationMetrics> operations = new LinkedHashMap<>();
+    private final Map<String, Long> callsAtLastSummary = new HashMap<>();
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+    private volatile LongSupplier statementCacheHits = () -> 0;
+    private volatile LongSupplier statementCacheMisses = () -> 0;
+    private ScheduledExecutorService reporter;
+
+    public static synchronized DatabaseMetrics getInstance() {
+        if (instance == null) {
+            instance = new DatabaseMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the metrics of a method, creating them on first use
+     * @param name The name of the method
+     * @return The method's metrics
+     */
+    public synchronized OperationMetrics operation(String name) {
+        OperationMetrics operation = operations.get(name);
+        if (operation == null) {
+            operation = new OperationMetrics(name);
+            operations.put(name, operation);
+            if (!registeredNames.isEmpty()) {
+                register(operation, operationName(name));
+            }
+        }
+        return operation;
+    }
+
+    /**
+     * @return The metrics of every method, in the order they were created
+     */
+    public synchronized List<OperationMetrics> getOperations() {
+        return new ArrayList<>(operations.values());
+    }
+
+    /**
+     * Sets where statement cache hits and misses are read from
+     * @param hits Reads the number of prepared statements served from the cache
+     * @param misses Reads the number of statements that had to be prepared
+     */
+    public void setStatementCacheCounters(LongSupplier hits, LongSupplier misses) {
+        this.statementCacheHits = hits;
+        this.statementCacheMisses = misses;
+    }
+
+    /**
+     * Registers the MXBeans and starts logging a summary at a fixed interval, both on the reporting thread
+     * @param reportInterval How often to log a summary, or zero to never log one
+     */
+    public synchronized void start(Duration reportInterval) {
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "database-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.execute(this::registerMBeans);
+        long intervalMillis = reportInterval.toMillis();
+        if (intervalMillis > 0) {
+            reporter.scheduleAtFixedRate(this::logSummary, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the periodic summaries, logs a last one, and unregisters the MXBeans
+     */
+    public synchronized void shutdown() {
+        if (reporter == null) {
+            return;
+        }
+        reporter.shutdownNow();
+        reporter = null;
+        logSummary();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredNames) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.debug("Unable to unregister {}", name, e);
+            }
+        }
+        registeredNames.clear();
+    }
+
+    @Override
+    public synchronized void logSummary() {
+        List<OperationMetrics> called = new ArrayList<>();
+        for (OperationMetrics operation : operations.values()) {
+            if (operation.getCalls() > 0) {
+                called.add(operation);
+            }
+        }
+        if (called.isEmpty()) {
+            return;
+        }
+        called.sort(Comparator.comparingDouble(OperationMetrics::getTotalMillis).reversed());
+        StringBuilder summary = new StringBuilder(String.format(
+                "Database metrics: %d calls, %d errors, statement cache %d hits / %d misses (%.1f%%)",
+                getTotalCalls(), getTotalErrors(), getStatementCacheHits(), getStatementCacheMisses(),
+                getStatementCacheHitRatio() * 100));
+        for (OperationMetrics operation : called) {
+            long calls = operation.getCalls();
+            long newCalls = calls - callsAtLastSummary.getOrDefault(operation.getName(), 0L);
+            callsAtLastSummary.put(operation.getName(), calls);
+            summary.append(String.format(
+                    "%n  %-34s %9d calls (+%d) %6d errors %10d rows  total %10.1f ms  mean %8.3f  p50 %8.3f  p99 %8.3f  max %8.3f ms",
+                    operation.getName(), calls, newCalls, operation.getErrors(), operation.getRowsReturned(),
+                    operation.getTotalMillis(), operation.getMeanMillis(), operation.getP50Millis(),
+                    operation.getP99Millis(), operation.getMaxMillis()));
+        }
+        LOGGER.info(summary.toString());
+    }
+
+    @Override
+    public synchronized String[] getOperationNames() {
+        return operations.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public synchronized long getTotalCalls() {
+        long total = 0;
+        for (OperationMetrics operation : operations.values()) {
+            total += operation.getCalls();
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long getTotalErrors() {
+        long total = 0;
+        for (OperationMetrics operation : operations.values()) {
+            total += operation.getErrors();
+        }
+        return total;
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return statementCacheHits.getAsLong();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.getAsLong();
+    }
+
+    /**
+     * @return The fraction of prepared statements served from the cache, or 0 if none have been prepared
+     */
+    @Override
+    public double getStatementCacheHitRatio() {
+        long hits = getStatementCacheHits();
+        long total = hits + getStatementCacheMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private synchronized void registerMBeans() {
+        if (!registeredNames.isEmpty()) {
+            return;
+        }
+        try {
+            register(this, new ObjectName(JMX_DOMAIN + ":type=DatabaseMetrics"));
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register database metrics with JMX", e);
+            return;
+        }
+        for (OperationMetrics operation : operations.values()) {
+            register(operation, operationName(operation.getName()));
+        }
+    }
+
+    private void register(Object mbean, ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, name);
+            registeredNames.add(name);
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register {} with JMX", name, e);
+        }
+    }
+
+    private static ObjectName operationName(String operation) {
+        try {
+            return new ObjectName(JMX_DOMAIN + ":type=DatabaseMetrics,operation=" + operation);
+        } catch (JMException e) {
+            LOGGER.warn("Unable to name the MXBean of {}", operation, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package edu.virginia.sde.reviews;
+
+/**
+ * The JMX view of the database-wide {@link DatabaseMetrics}. Each method has its own {@link OperationMetricsMXBean}.
+ */
+public interface DatabaseMetricsMXBean {
+    String[] getOperationNames();
+
+    long getTotalCalls();
+
+    long getTotalErrors();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    double getStatementCacheHitRatio();
+
+    /**
+     * Writes the summary to the log now rather than waiting for the next report
+     */
+    void logSummary();
+}
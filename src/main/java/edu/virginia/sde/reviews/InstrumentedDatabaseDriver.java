@@ -0,0 +1,341 @@
+package edu.virginia.sde.reviews;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.function.ToLongFunction;
+
+/**
+ * A DatabaseDriver that records the latency, errors and rows returned of every public method in
+ * {@link DatabaseMetrics}. Calls the driver makes to its own public methods are recorded too, under their own names.
+ * <p>
+ * The overloads that take a Course or User only resolve the ID and call the overload that takes the ID, so
+ * they are recorded as that overload and the resolveCourseId or resolveUserId call. Accessors that only read
+ * fields, such as the cache getters, are not recorded.
+ */
+public class InstrumentedDatabaseDriver extends DatabaseDriver {
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface VoidCall {
+        void call() throws SQLException;
+    }
+
+    private static final ToLongFunction<Object> NO_ROWS = result -> 0;
+    private static final ToLongFunction<List<?>> LIST_ROWS = List::size;
+    private static final ToLongFunction<Optional<?>> OPTIONAL_ROWS = result -> result.isPresent() ? 1 : 0;
+
+    private final OperationMetrics connect;
+    private final OperationMetrics disconnect;
+    private final OperationMetrics commit;
+    private final OperationMetrics rollback;
+    private final OperationMetrics inTransaction;
+    private final OperationMetrics inSavepoint;
+    private final OperationMetrics createTables;
+    private final OperationMetrics clearTables;
+    private final OperationMetrics getRatingColumnStore;
+    private final OperationMetrics getLeaderboard;
+    private final OperationMetrics getCourseSearchIndex;
+    private final OperationMetrics completeSubject;
+    private final OperationMetrics findSimilarCourses;
+    private final OperationMetrics addCourse;
+    private final OperationMetrics addCourses;
+    private final OperationMetrics courseAlreadyExists;
+    private final OperationMetrics getAllCoursesWithRatings;
+    private final OperationMetrics searchCourses;
+    private final OperationMetrics getCourseById;
+    private final OperationMetrics getCourseId;
+    private final OperationMetrics resolveCourseId;
+    private final OperationMetrics addUser;
+    private final OperationMetrics addUserWithHash;
+    private final OperationMetrics updatePasswordHash;
+    private final OperationMetrics userExists;
+    private final OperationMetrics getUserId;
+    private final OperationMetrics resolveUserId;
+    private final OperationMetrics getUserByUsername;
+    private final OperationMetrics getPasswordForUser;
+    private final OperationMetrics addReview;
+    private final OperationMetrics removeReview;
+    private final OperationMetrics editReview;
+    private final OperationMetrics getReviewsForCourse;
+    private final OperationMetrics getReviewsForCoursePage;
+    private final OperationMetrics getReviewsFromUser;
+    private final OperationMetrics getReviewsFromUserWithCourses;
+    private final OperationMetrics getReviewFromUserForCourse;
+    private final OperationMetrics calculateAverageReviewForCourse;
+    private final OperationMetrics getRatingSummary;
+
+    /**
+     * @param sqliteFilename The database file
+     * @param metrics Where to record the metrics of each method
+     */
+    public InstrumentedDatabaseDriver(String sqliteFilename, DatabaseMetrics metrics) {
+        super(sqliteFilename);
+        connect = metrics.operation("connect");
+        disconnect = metrics.operation("disconnect");
+        commit = metrics.operation("commit");
+        rollback = metrics.operation("rollback");
+        inTransaction = metrics.operation("inTransaction");
+        inSavepoint = metrics.operation("inSavepoint");
+        createTables = metrics.operation("createTables");
+        clearTables = metrics.operation("clearTables");
+        getRatingColumnStore = metrics.operation("getRatingColumnStore");
+        getLeaderboard = metrics.operation("getLeaderboard");
+        getCourseSearchIndex = metrics.operation("getCourseSearchIndex");
+        completeSubject = metrics.operation("completeSubject");
+        findSimilarCourses = metrics.operation("findSimilarCourses");
+        addCourse = metrics.operation("addCourse");
+        addCourses = metrics.operation("addCourses");
+        courseAlreadyExists = metrics.operation("courseAlreadyExists");
+        getAllCoursesWithRatings = metrics.operation("getAllCoursesWithRatings");
+        searchCourses = metrics.operation("searchCourses");
+        getCourseById = metrics.operation("getCourseById");
+        getCourseId = metrics.operation("getCourseId");
+        resolveCourseId = metrics.operation("resolveCourseId");
+        addUser = metrics.operation("addUser");
+        addUserWithHash = metrics.operation("addUserWithHash");
+        updatePasswordHash = metrics.operation("updatePasswordHash");
+        userExists = metrics.operation("userExists");
+        getUserId = metrics.operation("getUserId");
+        resolveUserId = metrics.operation("resolveUserId");
+        getUserByUsername = metrics.operation("getUserByUsername");
+        getPasswordForUser = metrics.operation("getPasswordForUser");
+        addReview = metrics.operation("addReview");
+        removeReview = metrics.operation("removeReview");
+        editReview = metrics.operation("editReview");
+        getReviewsForCourse = metrics.operation("getReviewsForCourse");
+        getReviewsForCoursePage = metrics.operation("getReviewsForCoursePage");
+        getReviewsFromUser = metrics.operation("getReviewsFromUser");
+        getReviewsFromUserWithCourses = metrics.operation("getReviewsFromUserWithCourses");
+        getReviewFromUserForCourse = metrics.operation("getReviewFromUserForCourse");
+        calculateAverageReviewForCourse = metrics.operation("calculateAverageReviewForCourse");
+        getRatingSummary = metrics.operation("getRatingSummary");
+        metrics.setStatementCacheCounters(this::getStatementCacheHits, this::getStatementCacheMisses);
+    }
+
+    @Override
+    public void connect() throws SQLException {
+        run(connect, super::connect);
+    }
+
+    @Override
+    public void disconnect() throws SQLException {
+        run(disconnect, super::disconnect);
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        run(commit, super::commit);
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        run(rollback, super::rollback);
+    }
+
+    @Override
+    public <T> T inTransaction(AsyncDatabaseDriver.DatabaseCall<T> work) throws SQLException {
+        return time(inTransaction, () -> super.inTransaction(work), NO_ROWS);
+    }
+
+    @Override
+    public <T> T inSavepoint(AsyncDatabaseDriver.DatabaseCall<T> work) throws SQLException {
+        return time(inSavepoint, () -> super.inSavepoint(work), NO_ROWS);
+    }
+
+    @Override
+    public void createTables() throws SQLException {
+        run(createTables, super::createTables);
+    }
+
+    @Override
+    public void clearTables() throws SQLException {
+        run(clearTables, super::clearTables);
+    }
+
+    @Override
+    public RatingColumnStore getRatingColumnStore() throws SQLException {
+        return time(getRatingColumnStore, super::getRatingColumnStore, NO_ROWS);
+    }
+
+    @Override
+    public List<LeaderboardEntry> getLeaderboard(LeaderboardType type, String subject, int limit) throws SQLException {
+        return time(getLeaderboard, () -> super.getLeaderboard(type, subject, limit), LIST_ROWS);
+    }
+
+    @Override
+    public CourseSearchIndex getCourseSearchIndex() throws SQLException {
+        return time(getCourseSearchIndex, super::getCourseSearchIndex, NO_ROWS);
+    }
+
+    @Override
+    public List<String> completeSubject(String prefix, int limit) throws SQLException {
+        return time(completeSubject, () -> super.completeSubject(prefix, limit), LIST_ROWS);
+    }
+
+    @Override
+    public List<Course> findSimilarCourses(String title, int limit) throws SQLException {
+        return time(findSimilarCourses, () -> super.findSimilarCourses(title, limit), LIST_ROWS);
+    }
+
+    @Override
+    public void addCourse(Course course) throws SQLException {
+        run(addCourse, () -> super.addCourse(course));
+    }
+
+    @Override
+    public int addCourses(List<Course> courses) throws SQLException {
+        return time(addCourses, () -> super.addCourses(courses), NO_ROWS);
+    }
+
+    @Override
+    public boolean courseAlreadyExists(String subject, int courseNumber, String title) throws SQLException {
+        return time(courseAlreadyExists, () -> super.courseAlreadyExists(subject, courseNumber, title), NO_ROWS);
+    }
+
+    @Override
+    public List<Course> getAllCoursesWithRatings() throws SQLException {
+        return time(getAllCoursesWithRatings, super::getAllCoursesWithRatings, LIST_ROWS);
+    }
+
+    @Override
+    public List<Course> searchCourses(CourseSearchCriteria criteria, CourseSort sort, int limit, int offset) throws SQLException {
+        return time(searchCourses, () -> super.searchCourses(criteria, sort, limit, offset), LIST_ROWS);
+    }
+
+    @Override
+    public Optional<Course> getCourseById(int courseID) throws SQLException {
+        return time(getCourseById, () -> super.getCourseById(courseID), OPTIONAL_ROWS);
+    }
+
+    @Override
+    public int getCourseId(String subject, int number, String title) throws SQLException {
+        return time(getCourseId, () -> super.getCourseId(subject, number, title), NO_ROWS);
+    }
+
+    @Override
+    public int resolveCourseId(Course course) throws SQLException {
+        return time(resolveCourseId, () -> super.resolveCourseId(course), NO_ROWS);
+    }
+
+    @Override
+    public void addUser(User user) throws SQLException {
+        run(addUser, () -> super.addUser(user));
+    }
+
+    @Override
+    public User addUserWithHash(String username, String passwordHash) throws SQLException {
+        return time(addUserWithHash, () -> super.addUserWithHash(username, passwordHash), NO_ROWS);
+    }
+
+    @Override
+    public void updatePasswordHash(int userId, String passwordHash) throws SQLException {
+        run(updatePasswordHash, () -> super.updatePasswordHash(userId, passwordHash));
+    }
+
+    @Override
+    public boolean userExists(String username) throws SQLException {
+        return time(userExists, () -> super.userExists(username), NO_ROWS);
+    }
+
+    @Override
+    public int getUserId(String username) throws SQLException {
+        return time(getUserId, () -> super.getUserId(username), NO_ROWS);
+    }
+
+    @Override
+    public int resolveUserId(User user) throws SQLException {
+        return time(resolveUserId, () -> super.resolveUserId(user), NO_ROWS);
+    }
+
+    @Override
+    public Optional<User> getUserByUsername(String username) throws SQLException {
+        return time(getUserByUsername, () -> super.getUserByUsername(username), OPTIONAL_ROWS);
+    }
+
+    @Override
+    public Optional<String> getPasswordForUser(User user) throws SQLException {
+        return time(getPasswordForUser, () -> super.getPasswordForUser(user), OPTIONAL_ROWS);
+    }
+
+    @Override
+    public void addReview(Review review) throws SQLException {
+        run(addReview, () -> super.addReview(review));
+    }
+
+    @Override
+    public void removeReview(int courseId, int userId) throws SQLException {
+        run(removeReview, () -> super.removeReview(courseId, userId));
+    }
+
+    @Override
+    public void editReview(Review oldReview, Review newReview) throws SQLException {
+        run(editReview, () -> super.editReview(oldReview, newReview));
+    }
+
+    @Override
+    public List<Review> getReviewsForCourse(int courseId) throws SQLException {
+        return time(getReviewsForCourse, () -> super.getReviewsForCourse(courseId), LIST_ROWS);
+    }
+
+    @Override
+    public ReviewPage getReviewsForCourse(int courseId, ReviewPage.Cursor after, int pageSize) throws SQLException {
+        return time(getReviewsForCoursePage, () -> super.getReviewsForCourse(courseId, after, pageSize),
+                page -> page.getReviews().size());
+    }
+
+    @Override
+    public List<Review> getReviewsFromUser(int userId) throws SQLException {
+        return time(getReviewsFromUser, () -> super.getReviewsFromUser(userId), LIST_ROWS);
+    }
+
+    @Override
+    public List<ReviewWithCourse> getReviewsFromUserWithCourses(int userId) throws SQLException {
+        return time(getReviewsFromUserWithCourses, () -> super.getReviewsFromUserWithCourses(userId), LIST_ROWS);
+    }
+
+    @Override
+    public Optional<Review> getReviewFromUserForCourse(int userId, int courseId) throws SQLException {
+        return time(getReviewFromUserForCourse, () -> super.getReviewFromUserForCourse(userId, courseId), OPTIONAL_ROWS);
+    }
+
+    @Override
+    public OptionalDouble calculateAverageReviewForCourse(int courseId) throws SQLException {
+        return time(calculateAverageReviewForCourse, () -> super.calculateAverageReviewForCourse(courseId),
+                average -> average.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public RatingSummary getRatingSummary(int courseId) throws SQLException {
+        return time(getRatingSummary, () -> super.getRatingSummary(courseId), NO_ROWS);
+    }
+
+    private static <T> T time(OperationMetrics operation, Call<T> call, ToLongFunction<? super T> rows) throws SQLException {
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.call();
+        } catch (Throwable e) {
+            operation.recordFailure(start);
+            throw e;
+        }
+        operation.recordSuccess(start, rows.applyAsLong(result));
+        return result;
+    }
+
+    private static void run(OperationMetrics operation, VoidCall call) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            call.call();
+        } catch (Throwable e) {
+            operation.recordFailure(start);
+            throw e;
+        }
+        operation.recordSuccess(start, 0);
+    }
+}
@@ -0,0 +1,117 @@
+package edu.virginia.sde.reviews;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, laid out like HdrHistogram: values below {@link #SUB_BUCKET_COUNT}
+ * get a bucket each, and each power of two above that is split into {@link #SUB_BUCKET_COUNT} / 2 buckets,
+ * so every recorded value is kept to within 1/64 of itself. All buckets are allocated up front, so recording
+ * allocates nothing and is safe from any number of threads.
+ * <p>
+ * Values above {@link #HIGHEST_TRACKABLE_NANOS}, about 68 seconds, are counted in the last bucket, though the
+ * maximum is still kept exactly. Reads while values are being recorded may see some of a concurrent recording
+ * and not the rest, which percentiles tolerate.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int HIGHEST_BIT = 35;
+    public static final long HIGHEST_TRACKABLE_NANOS = (1L << (HIGHEST_BIT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(HIGHEST_TRACKABLE_NANOS) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one latency
+     * @param nanos The latency in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketIndex(Math.min(value, HIGHEST_TRACKABLE_NANOS)));
+        count.incrementAndGet();
+        totalNanos.addAndGet(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * @return The number of latencies recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The mean latency in nanoseconds, or 0 if nothing has been recorded
+     */
+    public double getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) totalNanos.get() / n;
+    }
+
+    /**
+     * @return The highest latency recorded in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Gets the latency that the given percentage of recorded latencies are at or below
+     * @param percentile The percentage, from 0 to 100
+     * @return The highest latency in the bucket the percentile falls in, or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        double clamped = Math.min(Math.max(percentile, 0), 100);
+        long rank = Math.max(1, (long) Math.ceil(clamped / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // The bucket bound may overshoot the maximum, and the last bucket also holds larger values
+                return i == snapshot.length - 1 ? getMaxNanos() : Math.min(highestValueInBucket(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Maps a value to its bucket. Values below SUB_BUCKET_COUNT map to themselves; above that, the bucket is
+     * picked by the position of the highest set bit and the SUB_BUCKET_BITS - 1 bits below it.
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (value >>> shift) - SUB_BUCKET_HALF;
+    }
+
+    /**
+     * @return The highest value that maps to the bucket
+     */
+    static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
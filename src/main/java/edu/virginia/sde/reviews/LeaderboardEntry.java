@@ -0,0 +1,40 @@
+package edu.virginia.sde.reviews;
+
+/**
+ * A course's place on a leaderboard, with the figures it was ranked by
+ */
+public class LeaderboardEntry {
+    private final int courseId;
+    private final int reviewCount;
+    private final double averageRating;
+    private final double score;
+
+    public LeaderboardEntry(int courseId, int reviewCount, double averageRating, double score) {
+        this.courseId = courseId;
+        this.reviewCount = reviewCount;
+        this.averageRating = averageRating;
+        this.score = score;
+    }
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    /**
+     * @return The plain mean of the course's ratings
+     */
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    /**
+     * @return The value the leaderboard is ordered by, higher first
+     */
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,20 @@
+package edu.virginia.sde.reviews;
+
+/**
+ * The course leaderboards kept by {@link CourseLeaderboards}. Only courses with at least one review are ranked.
+ */
+public enum LeaderboardType {
+    /**
+     * Highest Bayesian average rating first, so a course with a few high ratings does not outrank
+     * a course with many
+     */
+    TOP_RATED,
+    /**
+     * Most reviews first
+     */
+    MOST_REVIEWED,
+    /**
+     * Most recent review activity first, each review counting half as much for every week of its age
+     */
+    TRENDING
+}
@@ -8,8 +8,7 @@ import javafx.scene.control.TextField;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
 
-import java.sql.*;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class LoginController {
 
@@ -24,7 +23,8 @@ public class LoginController {
     @FXML
     private AnchorPane rootPane;
 
-    private DatabaseDriver dbDriver;
+    private AsyncDatabaseDriver asyncDriver;
+    private final PasswordHasher passwordHasher = PasswordHasher.getInstance();
     private CourseReviewApplication application;
 
     @FXML
@@ -32,23 +32,22 @@ public class LoginController {
         Platform.runLater(() -> rootPane.requestFocus());
     }
 
-    public LoginController() {
-        Configuration configuration = new Configuration();
-        this.dbDriver = DatabaseDriver.getInstance(configuration.getDatabaseFilename());
-        try {
-            this.dbDriver.connect();
-            this.dbDriver.createTables();
-        } catch (SQLException e) {
-            messageLabel.setText("Unable to connect to database.");
-        }
-    }
-
     public void setApplication(CourseReviewApplication application) {
         this.application = application;
     }
 
     public void setDatabaseDriver(DatabaseDriver dbDriver) {
-        this.dbDriver = dbDriver;
+        this.asyncDriver = AsyncDatabaseDriver.getInstance(dbDriver);
+    }
+
+    /**
+     * Clears the form, for when the screen is shown again after logging out
+     */
+    public void reset() {
+        usernameField.clear();
+        passwordField.clear();
+        messageLabel.setText("");
+        rootPane.requestFocus();
     }
 
     @FXML
@@ -65,32 +64,60 @@ public class LoginController {
             return;
         }
 
-        try {
-            if (dbDriver.userExists(username)) {
-                Optional<String> storedPassword = dbDriver.getPasswordForUser(new User(username, ""));
-                if (storedPassword.isPresent() && storedPassword.get().equals(password)) {
-                    // Login successful - proceed to next scene
-                    messageLabel.setText("Login successful.");
-                    User currentUser = dbDriver.getUserByUsername(username).orElseThrow(() ->
-                            new SQLException("User not found"));
-                    Platform.runLater(() -> {
+        // One lookup on a database worker, then the slow hash check on the hashing pool
+        CompletableFuture<LoginAttempt> login = asyncDriver.submit(driver -> driver.getUserByUsername(username))
+                .thenCompose(user -> {
+                    if (user.isEmpty()) {
+                        return CompletableFuture.completedFuture(new LoginAttempt(false, null));
+                    }
+                    String stored = user.get().getPassword();
+                    return passwordHasher.verifyAsync(password, stored).thenApply(matches -> {
+                        if (!matches) {
+                            return new LoginAttempt(true, null);
+                        }
+                        if (passwordHasher.needsRehash(stored)) {
+                            rehashPassword(user.get().getUserID(), password);
+                        }
+                        return new LoginAttempt(true, user.get());
+                    });
+                });
+        AsyncDatabaseDriver.onFxThread(login,
+                attempt -> {
+                    if (!attempt.userExists()) {
+                        // User does not exist
+                        messageLabel.setText("User does not exist. Please create an account.");
+                    } else if (attempt.user() == null) {
+                        // Invalid password
+                        messageLabel.setText("Invalid password. Please try again.");
+                    } else {
+                        // Login successful - proceed to next scene
+                        messageLabel.setText("Login successful.");
                         try {
-                            application.switchToCourseSearch(currentUser);
+                            application.switchToCourseSearch(attempt.user());
                         } catch (Exception e) {
                             messageLabel.setText("Error while switching to course search screen.");
                         }
-                    });
-                } else {
-                    // Invalid password
-                    messageLabel.setText("Invalid password. Please try again.");
-                }
-            } else {
-                // User does not exist
-                messageLabel.setText("User does not exist. Please create an account.");
-            }
-        } catch (Exception e) {
-            messageLabel.setText("Error while logging in.");
-        }
+                    }
+                },
+                e -> messageLabel.setText("Error while logging in."));
+    }
+
+    /**
+     * Replaces a plain-text or outdated password hash in the background. Failures are ignored since the old
+     * value still verifies, and the next login tries again.
+     */
+    private void rehashPassword(int userId, String password) {
+        passwordHasher.hashAsync(password)
+                .thenCompose(hash -> asyncDriver.submit(driver -> {
+                    driver.updatePasswordHash(userId, hash);
+                    return null;
+                }));
+    }
+
+    /**
+     * The outcome of checking a username and password, user is null when the password did not match
+     */
+    private record LoginAttempt(boolean userExists, User user) {
     }
 
     @FXML
@@ -106,21 +133,23 @@ public class LoginController {
             return;
         }
 
-        try {
-            if (dbDriver.userExists(username)) {
-                messageLabel.setText("User already exists. Please login.");
-            } else {
-                dbDriver.addUser(new User(username, password));
-                messageLabel.setText("Registration successful. User created.");
-            }
-        } catch (SQLException e) {
-            try {
-                dbDriver.rollback();
-            } catch (SQLException ex) {
-                messageLabel.setText("Error while creating user.");
-            }
-            messageLabel.setText("Error while creating user.");
-        }
+        // Check the username first, so a taken name does not cost a hash
+        CompletableFuture<Boolean> created = asyncDriver.submit(driver -> driver.userExists(username))
+                .thenCompose(exists -> exists
+                        ? CompletableFuture.completedFuture(false)
+                        : passwordHasher.hashAsync(password).thenCompose(hash -> asyncDriver.submit(driver -> {
+                            // Another registration may have taken the name while the password was hashed
+                            if (driver.userExists(username)) {
+                                return false;
+                            }
+                            driver.addUserWithHash(username, hash);
+                            return true;
+                        })));
+        AsyncDatabaseDriver.onFxThread(created,
+                userCreated -> messageLabel.setText(userCreated
+                        ? "Registration successful. User created."
+                        : "User already exists. Please login."),
+                e -> messageLabel.setText("Error while creating user."));
 
     }
 
@@ -3,18 +3,16 @@ package edu.virginia.sde.reviews;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 
-import java.sql.SQLException;
-import java.util.List;
-
 public class MyReviewsController {
 
     public Button selectReviewButton;
     @FXML
-    private ListView<Review> reviewsListView;
+    private ListView<ReviewWithCourse> reviewsListView;
     @FXML
     private Label messageLabel;
 
     private DatabaseDriver dbDriver;
+    private AsyncDatabaseDriver asyncDriver;
     private CourseReviewApplication application;
     private User currentUser;
 
@@ -24,67 +22,43 @@ public class MyReviewsController {
 
     public void setDatabaseDriver(DatabaseDriver dbDriver) {
         this.dbDriver = dbDriver;
+        this.asyncDriver = AsyncDatabaseDriver.getInstance(dbDriver);
+    }
+
+    @FXML
+    public void initialize() {
+        setCustomCellFactory();
     }
 
     public void setCurrentUser(User user) {
         this.currentUser = user;
+        messageLabel.setText("");
         loadUserReviews();
     }
 
     private void loadUserReviews() {
-        try {
-            List<Review> userReviews = dbDriver.getReviewsFromUser(currentUser);
-            reviewsListView.getItems().setAll(userReviews);
-            setCustomCellFactory();
-
-        } catch (SQLException e) {
-            messageLabel.setText("Error loading reviews: " + e.getMessage());
-        }
+        AsyncDatabaseDriver.onFxThread(asyncDriver.submit(driver ->
+                        driver.getReviewsFromUserWithCourses(driver.resolveUserId(currentUser))),
+                userReviews -> reviewsListView.getItems().setAll(userReviews),
+                e -> messageLabel.setText("Error loading reviews: " + e.getMessage()));
     }
 
     private void setCustomCellFactory() {
         reviewsListView.setCellFactory(lv -> new ListCell<>() {
             @Override
-            protected void updateItem(Review review, boolean empty) {
+            protected void updateItem(ReviewWithCourse review, boolean empty) {
                 super.updateItem(review, empty);
-                if (empty || review == null) {
-                    setText(null);
-                } else {
-                    displayReview(review);
-                }
-            }
-
-            private void displayReview(Review review) {
-                try {
-                    Course course = dbDriver.getCourseById(review.getCourseID()).orElse(null);
-                    if (course != null) {
-                        String displayText = String.format("%s %d: %s\nRating: %d/5\nComment: %s",
-                                course.getSubject(), course.getCourseNumber(), course.getTitle(),
-                                review.getRating(), review.getComment());
-                        setText(displayText);
-                    }
-                } catch (SQLException e) {
-                    setText("Error loading course details.");
-                }
+                // The course was loaded with the review, so rendering never touches the database
+                setText(empty || review == null ? null : review.toString());
             }
         });
     }
 
     @FXML
     protected void handleReviewSelect() {
-        Review selectedReview = reviewsListView.getSelectionModel().getSelectedItem();
+        ReviewWithCourse selectedReview = reviewsListView.getSelectionModel().getSelectedItem();
         if (selectedReview != null) {
-            navigateToCourseReview(selectedReview);
-        }
-    }
-
-    private void navigateToCourseReview(Review selectedReview) {
-        try {
-            dbDriver.getCourseById(selectedReview.getCourseID()).ifPresent(course ->
-                    application.switchToCourseReviewScreen(course, currentUser, "MyReviews")
-            );
-        } catch (SQLException e) {
-            messageLabel.setText("Error loading course: " + e.getMessage());
+            application.switchToCourseReviewScreen(selectedReview.getCourse(), currentUser, "MyReviews");
         }
     }
 
@@ -0,0 +1,95 @@
+package edu.virginia.sde.reviews;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count, latency, errors and rows returned for one DatabaseDriver method. Recording allocates nothing, so
+ * it can wrap the hottest queries.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final String name;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rowsReturned = new LongAdder();
+
+    public OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a call that returned
+     * @param startNanos The {@link System#nanoTime()} when the call started
+     * @param rows The number of rows the call returned
+     */
+    public void recordSuccess(long startNanos, long rows) {
+        latencies.record(System.nanoTime() - startNanos);
+        rowsReturned.add(rows);
+    }
+
+    /**
+     * Records a call that threw
+     * @param startNanos The {@link System#nanoTime()} when the call started
+     */
+    public void recordFailure(long startNanos) {
+        latencies.record(System.nanoTime() - startNanos);
+        errors.increment();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCalls() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latencies.getMeanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latencies.getValueAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP95Millis() {
+        return latencies.getValueAtPercentile(95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latencies.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latencies.getMaxNanos() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return The total time spent in the method, in milliseconds
+     */
+    public double getTotalMillis() {
+        return getMeanMillis() * getCalls();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+}
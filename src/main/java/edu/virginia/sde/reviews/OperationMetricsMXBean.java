@@ -0,0 +1,24 @@
+package edu.virginia.sde.reviews;
+
+/**
+ * The JMX view of one DatabaseDriver method's {@link OperationMetrics}. Counts are since the application started.
+ */
+public interface OperationMetricsMXBean {
+    String getName();
+
+    long getCalls();
+
+    long getErrors();
+
+    long getRowsReturned();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,176 @@
+package edu.virginia.sde.reviews;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes and verifies passwords with salted PBKDF2-HMAC-SHA256. Hashes are stored as
+ * {@code pbkdf2-sha256$<iterations>$<salt>$<hash>}, salt and hash in Base64, so each stored hash keeps the
+ * work factor it was made with and the work factor can be raised without invalidating existing passwords.
+ * <p>
+ * Passwords stored before hashing was introduced are plain text. They still verify, and
+ * {@link #needsRehash(String)} reports them, along with hashes of an outdated work factor, so they can be
+ * replaced after the next successful login.
+ * <p>
+ * Hashing is deliberately slow, so the async methods run it on a small pool with one thread per core and a
+ * bounded queue, keeping it off the JavaFX application thread and the database workers. When the queue is
+ * full, the returned future fails with a RejectedExecutionException rather than queueing without bound.
+ */
+public class PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 310_000;
+    public static final int MAX_QUEUED_REQUESTS = 64;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+
+    private static PasswordHasher instance;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param iterations The PBKDF2 iteration count for new hashes, the higher the slower
+     */
+    public PasswordHasher(int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+        this.iterations = iterations;
+        int threads = Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_REQUESTS), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * @return The shared hasher, using the passwordIterations of config.json
+     */
+    public static synchronized PasswordHasher getInstance() {
+        if (instance == null) {
+            instance = new PasswordHasher(Configuration.getInstance().getPasswordIterations());
+        }
+        return instance;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Hashes a password with a new random salt, on the calling thread
+     * @param password The password
+     * @return The hash to store
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$"
+                + encoder.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * Checks a password against a stored hash, or against a stored plain-text password, on the calling thread.
+     * Takes the same time wherever the password and the stored value first differ.
+     * @param password The password entered
+     * @param stored The stored hash or legacy plain-text password
+     * @return True if the password matches
+     */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!isHash(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return storedIterations > 0 && MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations, expected.length));
+        } catch (IllegalArgumentException e) {
+            // Covers malformed iteration counts and Base64
+            return false;
+        }
+    }
+
+    /**
+     * @return True if the stored value is plain text or was hashed with a different work factor,
+     * so it should be replaced with a new hash of the password once the password is verified
+     */
+    public boolean needsRehash(String stored) {
+        if (!isHash(stored)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || !parts[1].equals(Integer.toString(iterations));
+    }
+
+    /**
+     * @return True if the stored value is a hash made by this class rather than a plain-text password
+     */
+    public static boolean isHash(String stored) {
+        return stored != null && stored.startsWith(PREFIX + "$");
+    }
+
+    /**
+     * Hashes a password on the hashing pool
+     * @param password The password
+     * @return A future completed with the hash to store
+     */
+    public CompletableFuture<String> hashAsync(String password) {
+        return CompletableFuture.supplyAsync(() -> hash(password), executor);
+    }
+
+    /**
+     * Checks a password against a stored hash on the hashing pool
+     * @param password The password entered
+     * @param stored The stored hash or legacy plain-text password
+     * @return A future completed with true if the password matches
+     */
+    public CompletableFuture<Boolean> verifyAsync(String password, String stored) {
+        return CompletableFuture.supplyAsync(() -> verify(password, stored), executor);
+    }
+
+    /**
+     * Stops the hashing pool once the queued requests are done
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        return pbkdf2(password, salt, iterations, HASH_BYTES);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations, int length) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // Every Java runtime is required to provide PBKDF2WithHmacSHA256
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
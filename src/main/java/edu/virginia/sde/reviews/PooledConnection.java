@@ -0,0 +1,65 @@
+package edu.virginia.sde.reviews;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A connection leased from a {@link ConnectionPool}, along with its own statement cache.
+ * Closing it returns it to the pool rather than closing the underlying connection.
+ */
+public class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private final boolean writer;
+
+    // Lease bookkeeping, only touched by the thread holding this connection
+    int holds;
+    PooledConnection previous;
+
+    PooledConnection(ConnectionPool pool, Connection connection, boolean writer) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = new StatementCache(connection);
+        this.writer = writer;
+    }
+
+    /**
+     * Gets a prepared statement for the given SQL from this connection's statement cache.
+     * The returned statement is owned by the cache and must not be closed by the caller.
+     * @param sql The SQL text of the statement
+     * @return The cached prepared statement
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return statementCache.prepare(sql);
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    public boolean isWriter() {
+        return writer;
+    }
+
+    /**
+     * Returns the connection to the pool
+     */
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    void closeConnection() {
+        statementCache.close();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package edu.virginia.sde.reviews;
+
+import java.util.Arrays;
+
+/**
+ * An in-memory, column-oriented copy of every review's rating, for analytics that only need who rated
+ * which course what and when. Each review is one row across primitive arrays, so queries allocate nothing
+ * per review and each review costs a few dozen bytes.
+ * <p>
+ * Per-course counts, sums, and histograms are kept up to date as rows change, so they are constant time.
+ * The rows of each course are chained together, so time-windowed queries read only that course's rows.
+ * A hash index on (user, course) finds the row of a review when it is edited or removed.
+ */
+public class RatingColumnStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NONE = -1;
+
+    // One entry per review row
+    private int size;
+    private int[] courseIds = new int[INITIAL_CAPACITY];
+    private int[] userIds = new int[INITIAL_CAPACITY];
+    private byte[] ratings = new byte[INITIAL_CAPACITY];
+    private long[] epochMillis = new long[INITIAL_CAPACITY];
+    private int[] nextInCourse = new int[INITIAL_CAPACITY];
+    private int[] previousInCourse = new int[INITIAL_CAPACITY];
+
+    // One entry per course ID
+    private int[] firstRowOfCourse = new int[0];
+    private int[] reviewCounts = new int[0];
+    private long[] ratingSums = new long[0];
+    private int[] histograms = new int[0]; // five counts per course, for ratings 1 to 5
+
+    private final LongIntMap rowByUserAndCourse = new LongIntMap(INITIAL_CAPACITY);
+
+    /**
+     * Adds a review, or replaces the rating and time of the review the user already has for the course
+     * @param userId The ID of the user who wrote the review
+     * @param courseId The ID of the course reviewed
+     * @param rating The rating, from 1 to 5
+     * @param entryTimeMillis When the review was written, in epoch milliseconds
+     */
+    public synchronized void put(int userId, int courseId, int rating, long entryTimeMillis) {
+        if (rating < 1 || rating > 5) {
+            throw new IllegalArgumentException("Rating must be between 1 and 5");
+        }
+        long key = key(userId, courseId);
+        int row = rowByUserAndCourse.get(key);
+        if (row != LongIntMap.MISSING) {
+            countRating(courseId, ratings[row], -1);
+            ratings[row] = (byte) rating;
+            epochMillis[row] = entryTimeMillis;
+            countRating(courseId, rating, 1);
+            return;
+        }
+        ensureRowCapacity(size + 1);
+        ensureCourseCapacity(courseId + 1);
+        row = size++;
+        courseIds[row] = courseId;
+        userIds[row] = userId;
+        ratings[row] = (byte) rating;
+        epochMillis[row] = entryTimeMillis;
+        link(row, courseId);
+        countRating(courseId, rating, 1);
+        rowByUserAndCourse.put(key, row);
+    }
+
+    /**
+     * Removes the review a user wrote for a course, if there is one
+     * @param userId The ID of the user who wrote the review
+     * @param courseId The ID of the course reviewed
+     */
+    public synchronized void remove(int userId, int courseId) {
+        long key = key(userId, courseId);
+        int row = rowByUserAndCourse.remove(key);
+        if (row == LongIntMap.MISSING) {
+            return;
+        }
+        countRating(courseId, ratings[row], -1);
+        unlink(row, courseId);
+        // Move the last row into the gap to keep the columns dense
+        int last = --size;
+        if (row != last) {
+            int lastCourse = courseIds[last];
+            unlink(last, lastCourse);
+            courseIds[row] = lastCourse;
+            userIds[row] = userIds[last];
+            ratings[row] = ratings[last];
+            epochMillis[row] = epochMillis[last];
+            link(row, lastCourse);
+            rowByUserAndCourse.put(key(userIds[row], lastCourse), row);
+        }
+    }
+
+    /**
+     * @return The total number of reviews
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of reviews for the course
+     */
+    public synchronized int getReviewCount(int courseId) {
+        return courseId >= 0 && courseId < reviewCounts.length ? reviewCounts[courseId] : 0;
+    }
+
+    /**
+     * @return The mean rating of the course, or NaN if it has no reviews
+     */
+    public synchronized double getAverageRating(int courseId) {
+        int count = getReviewCount(courseId);
+        return count == 0 ? Double.NaN : (double) ratingSums[courseId] / count;
+    }
+
+    /**
+     * Copies the number of reviews with each rating into the given array, index 0 holding the 1-star count
+     * @param courseId The ID of the course
+     * @param into An array of at least five elements
+     * @return The array passed in
+     */
+    public synchronized int[] getHistogram(int courseId, int[] into) {
+        if (courseId >= 0 && courseId < reviewCounts.length) {
+            System.arraycopy(histograms, courseId * 5, into, 0, 5);
+        } else {
+            Arrays.fill(into, 0, 5, 0);
+        }
+        return into;
+    }
+
+    /**
+     * @return The number of reviews for the course written at or after fromMillis and before toMillis
+     */
+    public synchronized int getReviewCount(int courseId, long fromMillis, long toMillis) {
+        int count = 0;
+        for (int row = firstRow(courseId); row != NONE; row = nextInCourse[row]) {
+            if (epochMillis[row] >= fromMillis && epochMillis[row] < toMillis) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The mean rating of the course's reviews written at or after fromMillis and before toMillis,
+     * or NaN if there are none
+     */
+    public synchronized double getAverageRating(int courseId, long fromMillis, long toMillis) {
+        int count = 0;
+        long sum = 0;
+        for (int row = firstRow(courseId); row != NONE; row = nextInCourse[row]) {
+            if (epochMillis[row] >= fromMillis && epochMillis[row] < toMillis) {
+                count++;
+                sum += ratings[row];
+            }
+        }
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * Counts the course's reviews with each weighted by its age: a review written at referenceMillis counts as 1,
+     * and its weight halves for every halfLifeMillis before it and doubles for every halfLifeMillis after it.
+     * Since every weight changes by the same factor as time passes, the counts of two courses keep their order.
+     * @return The weighted review count
+     */
+    public synchronized double getDecayedReviewCount(int courseId, long referenceMillis, long halfLifeMillis) {
+        double count = 0;
+        for (int row = firstRow(courseId); row != NONE; row = nextInCourse[row]) {
+            count += Math.pow(2, (double) (epochMillis[row] - referenceMillis) / halfLifeMillis);
+        }
+        return count;
+    }
+
+    private int firstRow(int courseId) {
+        return courseId >= 0 && courseId < firstRowOfCourse.length ? firstRowOfCourse[courseId] : NONE;
+    }
+
+    private void countRating(int courseId, int rating, int delta) {
+        reviewCounts[courseId] += delta;
+        ratingSums[courseId] += (long) delta * rating;
+        histograms[courseId * 5 + rating - 1] += delta;
+    }
+
+    private void link(int row, int courseId) {
+        int first = firstRowOfCourse[courseId];
+        previousInCourse[row] = NONE;
+        nextInCourse[row] = first;
+        if (first != NONE) {
+            previousInCourse[first] = row;
+        }
+        firstRowOfCourse[courseId] = row;
+    }
+
+    private void unlink(int row, int courseId) {
+        int previous = previousInCourse[row];
+        int next = nextInCourse[row];
+        if (previous == NONE) {
+            firstRowOfCourse[courseId] = next;
+        } else {
+            nextInCourse[previous] = next;
+        }
+        if (next != NONE) {
+            previousInCourse[next] = previous;
+        }
+    }
+
+    private void ensureRowCapacity(int capacity) {
+        if (capacity <= courseIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, courseIds.length + (courseIds.length >> 1));
+        courseIds = Arrays.copyOf(courseIds, newCapacity);
+        userIds = Arrays.copyOf(userIds, newCapacity);
+        ratings = Arrays.copyOf(ratings, newCapacity);
+        epochMillis = Arrays.copyOf(epochMillis, newCapacity);
+        nextInCourse = Arrays.copyOf(nextInCourse, newCapacity);
+        previousInCourse = Arrays.copyOf(previousInCourse, newCapacity);
+    }
+
+    private void ensureCourseCapacity(int capacity) {
+        if (capacity <= firstRowOfCourse.length) {
+            return;
+        }
+        int oldCapacity = firstRowOfCourse.length;
+        int newCapacity = Math.max(capacity, oldCapacity + (oldCapacity >> 1));
+        firstRowOfCourse = Arrays.copyOf(firstRowOfCourse, newCapacity);
+        Arrays.fill(firstRowOfCourse, oldCapacity, newCapacity, NONE);
+        reviewCounts = Arrays.copyOf(reviewCounts, newCapacity);
+        ratingSums = Arrays.copyOf(ratingSums, newCapacity);
+        histograms = Arrays.copyOf(histograms, newCapacity * 5);
+    }
+
+    private static long key(int userId, int courseId) {
+        return ((long) userId << 32) | (courseId & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,72 @@
+package edu.virginia.sde.reviews;
+
+import java.util.OptionalDouble;
+
+/**
+ * The rating statistics shown on a course page: how many reviews the course has, their mean,
+ * how many reviews gave each rating, and the mean over the last 30 and 90 days.
+ */
+public class RatingSummary {
+    private final int courseId;
+    private final int reviewCount;
+    private final long ratingSum;
+    private final int[] histogram;
+    private final OptionalDouble last30DayAverage;
+    private final OptionalDouble last90DayAverage;
+
+    /**
+     * @param histogram The number of reviews with each rating, index 0 holding the 1-star count
+     */
+    public RatingSummary(int courseId, int reviewCount, long ratingSum, int[] histogram,
+                         OptionalDouble last30DayAverage, OptionalDouble last90DayAverage) {
+        if (histogram.length != 5) {
+            throw new IllegalArgumentException("A histogram has one count per rating from 1 to 5");
+        }
+        this.courseId = courseId;
+        this.reviewCount = reviewCount;
+        this.ratingSum = ratingSum;
+        this.histogram = histogram.clone();
+        this.last30DayAverage = last30DayAverage;
+        this.last90DayAverage = last90DayAverage;
+    }
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    /**
+     * @return The mean rating, or an empty OptionalDouble if the course has no reviews
+     */
+    public OptionalDouble getAverageRating() {
+        return reviewCount == 0 ? OptionalDouble.empty() : OptionalDouble.of((double) ratingSum / reviewCount);
+    }
+
+    /**
+     * @param rating A rating from 1 to 5
+     * @return The number of reviews with that rating
+     */
+    public int getCount(int rating) {
+        if (rating < 1 || rating > 5) {
+            throw new IllegalArgumentException("Rating must be between 1 and 5");
+        }
+        return histogram[rating - 1];
+    }
+
+    /**
+     * @return The mean rating of reviews from the last 30 days, or an empty OptionalDouble if there are none
+     */
+    public OptionalDouble getLast30DayAverage() {
+        return last30DayAverage;
+    }
+
+    /**
+     * @return The mean rating of reviews from the last 90 days, or an empty OptionalDouble if there are none
+     */
+    public OptionalDouble getLast90DayAverage() {
+        return last90DayAverage;
+    }
+}
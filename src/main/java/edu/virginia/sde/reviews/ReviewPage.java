@@ -0,0 +1,48 @@
+package edu.virginia.sde.reviews;
+
+import java.util.List;
+
+/**
+ * One page of a course's reviews, newest first, along with the cursor to pass to get the next page.
+ * Pages are keyed on (EntryTime, ID) rather than an offset, so each page is a direct index seek however
+ * deep the reader scrolls, and reviews added meanwhile do not shift later pages.
+ */
+public class ReviewPage {
+
+    /**
+     * The position just after the last review of a page
+     * @param entryTimeMillis The entry time of that review
+     * @param reviewId The ID of that review, which breaks ties between reviews entered at the same time
+     */
+    public record Cursor(long entryTimeMillis, int reviewId) {
+        /**
+         * @return A cursor positioned just after the given review
+         */
+        public static Cursor after(Review review) {
+            return new Cursor(review.getEntryTime().getTime(), review.getId());
+        }
+    }
+
+    private final List<Review> reviews;
+    private final Cursor nextCursor;
+
+    public ReviewPage(List<Review> reviews, Cursor nextCursor) {
+        this.reviews = List.copyOf(reviews);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Review> getReviews() {
+        return reviews;
+    }
+
+    /**
+     * @return The cursor for the next page, or null if this is the last page
+     */
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,30 @@
+package edu.virginia.sde.reviews;
+
+/**
+ * A review together with the course it was written for, loaded in a single query so that
+ * review lists can be rendered without looking up each course.
+ */
+public class ReviewWithCourse {
+    private final Review review;
+    private final Course course;
+
+    public ReviewWithCourse(Review review, Course course) {
+        this.review = review;
+        this.course = course;
+    }
+
+    public Review getReview() {
+        return review;
+    }
+
+    public Course getCourse() {
+        return course;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %d: %s\nRating: %d/5\nComment: %s",
+                course.getSubject(), course.getCourseNumber(), course.getTitle(),
+                review.getRating(), review.getComment());
+    }
+}
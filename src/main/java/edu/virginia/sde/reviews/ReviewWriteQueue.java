@@ -0,0 +1,243 @@
+package edu.virginia.sde.reviews;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces review writes from concurrent callers into group commits. A single writer thread takes the
+ * queued writes in batches, bounded by a maximum batch size and by how long the first write in a batch
+ * may wait, and runs each batch in one transaction so the batch shares a single commit.
+ * <p>
+ * Each write runs under its own savepoint, so a failing write is undone without affecting the rest of its
+ * batch. A write's future completes only after the batch commits, once the write is durable, and fails if
+ * the write or the commit fails.
+ */
+public class ReviewWriteQueue {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 5;
+
+    /**
+     * Queued by {@link #shutdown()} to wake the writer thread
+     */
+    private static final PendingWrite<Void> SHUTDOWN = new PendingWrite<>(driver -> null, new CompletableFuture<>());
+
+    private static ReviewWriteQueue instance;
+
+    private final DatabaseDriver driver;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean shutdown;
+
+    public ReviewWriteQueue(DatabaseDriver driver) {
+        this(driver, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_LATENCY_MILLIS);
+    }
+
+    public ReviewWriteQueue(DatabaseDriver driver, int maxBatchSize, long maxLatencyMillis) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.driver = driver;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.writerThread = new Thread(this::run, "review-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public static synchronized ReviewWriteQueue getInstance(DatabaseDriver driver) {
+        if (instance == null) {
+            instance = new ReviewWriteQueue(driver);
+        }
+        return instance;
+    }
+
+    /**
+     * Shuts down the shared queue if one was created, without starting a writer thread just to stop it
+     */
+    public static void shutdownIfStarted() {
+        ReviewWriteQueue started;
+        synchronized (ReviewWriteQueue.class) {
+            started = instance;
+        }
+        if (started != null) {
+            started.shutdown();
+        }
+    }
+
+    /**
+     * Queues a write to run in the next group commit. The write may read through the driver as well,
+     * and sees the earlier writes of its batch.
+     * @param write The work to run against the driver
+     * @return A future completed with the write's result once it is committed
+     */
+    public <T> CompletableFuture<T> submit(AsyncDatabaseDriver.DatabaseCall<T> write) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        // Checked under the lock shutdown takes, so no write is queued behind the shutdown marker
+        synchronized (this) {
+            if (shutdown) {
+                future.completeExceptionally(new RejectedExecutionException("The review write queue is shut down"));
+                return future;
+            }
+            queue.add(new PendingWrite<>(write, future));
+        }
+        return future;
+    }
+
+    /**
+     * Queues a new review
+     * @param review The review to add
+     * @return A future completed once the review is committed
+     */
+    public CompletableFuture<Void> addReview(Review review) {
+        return submit(driver -> {
+            driver.addReview(review);
+            return null;
+        });
+    }
+
+    /**
+     * Queues an edit to a review
+     * @param oldReview The review to edit
+     * @param newReview The new review to replace the old review
+     * @return A future completed once the edit is committed
+     */
+    public CompletableFuture<Void> editReview(Review oldReview, Review newReview) {
+        return submit(driver -> {
+            driver.editReview(oldReview, newReview);
+            return null;
+        });
+    }
+
+    /**
+     * Queues the removal of a review
+     * @param courseId The ID of the course to remove the review from
+     * @param userId The ID of the user who wrote the review
+     * @return A future completed once the removal is committed
+     */
+    public CompletableFuture<Void> removeReview(int courseId, int userId) {
+        return submit(driver -> {
+            driver.removeReview(courseId, userId);
+            return null;
+        });
+    }
+
+    /**
+     * Stops accepting writes, then waits for the queued writes to be committed. Writes still queued when the wait
+     * times out are failed rather than left pending.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (!shutdown) {
+                shutdown = true;
+                // Wakes the writer without interrupting it, since an interrupt during a commit would fail the
+                // next batch's wait for the writer connection
+                queue.add(SHUTDOWN);
+            }
+        }
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            failQueuedWrites(new RejectedExecutionException("Timed out waiting for queued review writes to commit"));
+        }
+    }
+
+    private void run() {
+        List<PendingWrite<?>> batch = new ArrayList<>(maxBatchSize);
+        boolean stopping = false;
+        while (!stopping || !queue.isEmpty()) {
+            try {
+                PendingWrite<?> first = stopping ? queue.poll() : queue.take();
+                if (first == null) {
+                    continue;
+                }
+                if (first == SHUTDOWN) {
+                    stopping = true;
+                } else {
+                    batch.add(first);
+                }
+                long deadline = System.nanoTime() + maxLatencyNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite<?> next = stopping || remaining <= 0 ? queue.poll() : queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == SHUTDOWN) {
+                        // Commit what is queued without waiting for more
+                        stopping = true;
+                    } else {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Shutdown does not interrupt, so carry on with whatever was collected
+            }
+            if (!batch.isEmpty()) {
+                // A stray interrupt would fail the wait for the writer connection
+                Thread.interrupted();
+                commit(batch);
+                batch.clear();
+            }
+        }
+        // Nothing should be left, but never leave a future pending
+        failQueuedWrites(new RejectedExecutionException("The review write queue is shut down"));
+    }
+
+    private void failQueuedWrites(Throwable error) {
+        PendingWrite<?> stranded;
+        while ((stranded = queue.poll()) != null) {
+            stranded.future().completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Runs a batch in one transaction, then completes each write's future with its outcome
+     */
+    private void commit(List<PendingWrite<?>> batch) {
+        List<Throwable> errors = new ArrayList<>(batch.size());
+        List<Object> results = new ArrayList<>(batch.size());
+        try {
+            driver.inTransaction(transaction -> {
+                for (PendingWrite<?> write : batch) {
+                    try {
+                        results.add(transaction.inSavepoint(write.call()));
+                        errors.add(null);
+                    } catch (SQLException | RuntimeException e) {
+                        results.add(null);
+                        errors.add(e);
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            // The commit failed, so none of the batch was written
+            batch.forEach(write -> write.future().completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(results.get(i), errors.get(i));
+        }
+    }
+
+    private record PendingWrite<T>(AsyncDatabaseDriver.DatabaseCall<T> call, CompletableFuture<T> future) {
+        @SuppressWarnings("unchecked")
+        void complete(Object result, Throwable error) {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete((T) result);
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package edu.virginia.sde.reviews;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Upgrades the database schema in place. The version of the schema is stored in SQLite's
+ * PRAGMA user_version, and every migration above that version is applied in its own transaction.
+ * <p>
+ * Some migrations remove existing rows, such as duplicate reviews, so a constraint can be added. Before one of
+ * those runs on a database with data, the database is copied beside its file, and the number of rows each step
+ * removes is logged.
+ */
+public class SchemaMigrator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final String REBUILD_RATING_STATS =
+            "INSERT INTO CourseRatingStats(CourseID, ReviewCount, RatingSum, Rating1, Rating2, Rating3, Rating4, Rating5) " +
+            "SELECT CourseID, COUNT(*), SUM(Rating), SUM(Rating = 1), SUM(Rating = 2), SUM(Rating = 3), " +
+            "SUM(Rating = 4), SUM(Rating = 5) FROM Reviews GROUP BY CourseID";
+
+    private static final String REBUILD_COURSES_FTS = "INSERT INTO CoursesFts(CoursesFts) VALUES ('rebuild')";
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Secondary indexes and one review per user per course",
+                    // Keep only the latest review from a user for a course so the unique index can be built
+                    removes("older reviews of a course by the same user",
+                            "DELETE FROM Reviews WHERE ID IN (SELECT ID FROM (SELECT ID, ROW_NUMBER() OVER (" +
+                                    "PARTITION BY UserID, CourseID ORDER BY EntryTime DESC, ID DESC) AS Place " +
+                                    "FROM Reviews) WHERE Place > 1)"),
+                    sql("CREATE INDEX IF NOT EXISTS idx_reviews_course_rating ON Reviews(CourseID, Rating)"),
+                    sql("CREATE UNIQUE INDEX IF NOT EXISTS idx_reviews_user_course ON Reviews(UserID, CourseID)"),
+                    sql("CREATE INDEX IF NOT EXISTS idx_courses_subject_number_title ON Courses(Subject, CourseNumber, Title)")),
+            new Migration(2, "Per-course rating aggregates maintained by triggers",
+                    sql("CREATE TABLE IF NOT EXISTS CourseRatingStats (" +
+                            "CourseID INTEGER PRIMARY KEY REFERENCES Courses(ID) ON DELETE CASCADE, " +
+                            "ReviewCount INTEGER NOT NULL DEFAULT 0, " +
+                            "RatingSum INTEGER NOT NULL DEFAULT 0, " +
+                            "Rating1 INTEGER NOT NULL DEFAULT 0, " +
+                            "Rating2 INTEGER NOT NULL DEFAULT 0, " +
+                            "Rating3 INTEGER NOT NULL DEFAULT 0, " +
+                            "Rating4 INTEGER NOT NULL DEFAULT 0, " +
+                            "Rating5 INTEGER NOT NULL DEFAULT 0)"),
+                    sql(REBUILD_RATING_STATS),
+                    sql("CREATE TRIGGER IF NOT EXISTS trg_reviews_stats_insert AFTER INSERT ON Reviews BEGIN " +
+                            addRatingStats("NEW") + "END"),
+                    sql("CREATE TRIGGER IF NOT EXISTS trg_reviews_stats_delete AFTER DELETE ON Reviews BEGIN " +
+                            adjustRatingStats("OLD", '-') + "END"),
+                    sql("CREATE TRIGGER IF NOT EXISTS trg_reviews_stats_update AFTER UPDATE OF Rating, CourseID ON Reviews BEGIN " +
+                            adjustRatingStats("OLD", '-') + addRatingStats("NEW") + "END")),
+            new Migration(3, "Full-text index over course titles",
+                    sql("CREATE VIRTUAL TABLE IF NOT EXISTS CoursesFts USING fts5(" +
+                            "Title, content='Courses', content_rowid='ID', tokenize='unicode61 remove_diacritics 2')"),
+                    sql("CREATE TRIGGER IF NOT EXISTS trg_courses_fts_insert AFTER INSERT ON Courses BEGIN " +
+                            "INSERT INTO CoursesFts(rowid, Title) VALUES (NEW.ID, NEW.Title); END"),
+                    sql("CREATE TRIGGER IF NOT EXISTS trg_courses_fts_delete AFTER DELETE ON Courses BEGIN " +
+                            "INSERT INTO CoursesFts(CoursesFts, rowid, Title) VALUES ('delete', OLD.ID, OLD.Title); END"),
+                    sql("CREATE TRIGGER IF NOT EXISTS trg_courses_fts_update AFTER UPDATE OF Title ON Courses BEGIN " +
+                            "INSERT INTO CoursesFts(CoursesFts, rowid, Title) VALUES ('delete', OLD.ID, OLD.Title); " +
+                            "INSERT INTO CoursesFts(rowid, Title) VALUES (NEW.ID, NEW.Title); END"),
+                    sql(REBUILD_COURSES_FTS)),
+            new Migration(4, "One course per subject, course number, and title",
+                    // Of the reviews a user wrote for copies of the same course, keep only the latest
+                    removes("reviews duplicated across copies of a course",
+                            "DELETE FROM Reviews WHERE ID IN (SELECT ID FROM (SELECT r.ID, ROW_NUMBER() OVER (" +
+                                    "PARTITION BY r.UserID, c.Subject, c.CourseNumber, c.Title " +
+                                    "ORDER BY r.EntryTime DESC, r.ID DESC) AS Place " +
+                                    "FROM Reviews r JOIN Courses c ON c.ID = r.CourseID) WHERE Place > 1)"),
+                    // Move the remaining reviews onto the oldest copy of each course, which the stats triggers follow
+                    moves("reviews onto the kept copy of their course",
+                            "UPDATE Reviews SET CourseID = (SELECT MIN(k.ID) FROM Courses c JOIN Courses k " +
+                                    "ON k.Subject = c.Subject AND k.CourseNumber = c.CourseNumber AND k.Title = c.Title " +
+                                    "WHERE c.ID = Reviews.CourseID) " +
+                                    "WHERE CourseID NOT IN (SELECT MIN(ID) FROM Courses GROUP BY Subject, CourseNumber, Title)"),
+                    removes("duplicate courses, merged into their oldest copy",
+                            "DELETE FROM Courses WHERE ID NOT IN (SELECT MIN(ID) FROM Courses GROUP BY Subject, CourseNumber, Title)"),
+                    sql("DELETE FROM CourseRatingStats WHERE CourseID NOT IN (SELECT ID FROM Courses)"),
+                    sql("DROP INDEX IF EXISTS idx_courses_subject_number_title"),
+                    sql("CREATE UNIQUE INDEX IF NOT EXISTS idx_courses_subject_number_title ON Courses(Subject, CourseNumber, Title)")),
+            new Migration(5, "Index for paging a course's reviews newest first",
+                    sql("CREATE INDEX IF NOT EXISTS idx_reviews_course_time ON Reviews(CourseID, EntryTime, ID)"))
+    );
+
+    private final Connection connection;
+
+    public SchemaMigrator(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @return The version of the schema currently stored in the database
+     */
+    public int getSchemaVersion() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA user_version")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * @return The version of the schema after every migration has been applied
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /**
+     * Applies every migration newer than the database's schema version
+     * @return The number of migrations applied
+     */
+    public int migrate() throws SQLException {
+        int currentVersion = getSchemaVersion();
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() > currentVersion) {
+                apply(migration);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Drops the secondary indexes on Courses and Reviews and the triggers that maintain CourseRatingStats and
+     * CoursesFts, so rows can be bulk loaded without per-row index and trigger work. The caller must pass the
+     * result to {@link #restoreDerivedObjects(List)} once the load is done, even if it failed.
+     * @return The DDL of the dropped indexes and triggers
+     */
+    public List<String> dropDerivedObjects() throws SQLException {
+        List<String> definitions = new ArrayList<>();
+        List<String> drops = new ArrayList<>();
+        // Indexes without SQL are the automatic ones backing UNIQUE and PRIMARY KEY constraints
+        String query = "SELECT type, name, sql FROM sqlite_master " +
+                "WHERE type IN ('index', 'trigger') AND tbl_name IN ('Courses', 'Reviews') AND sql IS NOT NULL " +
+                "ORDER BY type, name";
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            while (resultSet.next()) {
+                definitions.add(resultSet.getString("sql"));
+                drops.add("DROP " + resultSet.getString("type").toUpperCase() + " IF EXISTS "
+                        + resultSet.getString("name"));
+            }
+        }
+        executeInTransaction(drops);
+        return definitions;
+    }
+
+    /**
+     * Rebuilds CourseRatingStats and CoursesFts from the loaded rows, then recreates the indexes and triggers
+     * dropped by {@link #dropDerivedObjects()}
+     * @param definitions The DDL returned by dropDerivedObjects
+     */
+    public void restoreDerivedObjects(List<String> definitions) throws SQLException {
+        List<String> statements = new ArrayList<>();
+        statements.add("DELETE FROM CourseRatingStats");
+        statements.add(REBUILD_RATING_STATS);
+        statements.add(REBUILD_COURSES_FTS);
+        statements.addAll(definitions);
+        executeInTransaction(statements);
+    }
+
+    private void executeInTransaction(List<String> statements) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.executeUpdate(sql);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void apply(Migration migration) throws SQLException {
+        if (migration.removesData()) {
+            backUp(migration);
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (Step step : migration.steps()) {
+                int rows = statement.executeUpdate(step.sql());
+                if (step.change() != null && rows > 0) {
+                    LOGGER.warn("Schema migration {} {} {} {}", migration.version(), step.change(), rows, step.rows());
+                }
+            }
+            // PRAGMA statements cannot take bound parameters
+            statement.executeUpdate("PRAGMA user_version = " + migration.version());
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Schema migration " + migration.version() + " (" + migration.description()
+                    + ") failed: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Builds the trigger statements that count a review row into its course's CourseRatingStats row,
+     * creating the stats row for the course's first review
+     * @param row The trigger row alias, NEW or OLD
+     */
+    private static String addRatingStats(String row) {
+        return "INSERT INTO CourseRatingStats(CourseID) VALUES (" + row + ".CourseID) ON CONFLICT(CourseID) DO NOTHING; " +
+                adjustRatingStats(row, '+');
+    }
+
+    private static String adjustRatingStats(String row, char sign) {
+        StringBuilder sql = new StringBuilder("UPDATE CourseRatingStats SET ")
+                .append("ReviewCount = ReviewCount ").append(sign).append(" 1, ")
+                .append("RatingSum = RatingSum ").append(sign).append(' ').append(row).append(".Rating");
+        for (int rating = 1; rating <= 5; rating++) {
+            sql.append(", Rating").append(rating).append(" = Rating").append(rating).append(' ').append(sign)
+                    .append(" (").append(row).append(".Rating = ").append(rating).append(')');
+        }
+        return sql.append(" WHERE CourseID = ").append(row).append(".CourseID; ").toString();
+    }
+
+    /**
+     * Copies the database file before a migration that may remove rows, unless the database is in memory or has
+     * no rows for the migration to remove. The copy sits beside the database file, named for the migration.
+     */
+    private void backUp(Migration migration) throws SQLException {
+        String file = null;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA database_list")) {
+            while (resultSet.next()) {
+                if ("main".equals(resultSet.getString("name"))) {
+                    file = resultSet.getString("file");
+                }
+            }
+        }
+        if (file == null || file.isEmpty() || !hasRows("Courses") && !hasRows("Reviews")) {
+            return;
+        }
+        Path backup = Path.of(file + ".before-v" + migration.version() + ".bak");
+        try {
+            // VACUUM INTO will not overwrite, and an old copy is from a migration that did not complete
+            Files.deleteIfExists(backup);
+        } catch (IOException e) {
+            throw new SQLException("Unable to replace the database backup " + backup, e);
+        }
+        try (PreparedStatement statement = connection.prepareStatement("VACUUM INTO ?")) {
+            statement.setString(1, backup.toString());
+            statement.executeUpdate();
+        }
+        LOGGER.info("Backed up the database to {} before schema migration {} ({})", backup, migration.version(),
+                migration.description());
+    }
+
+    private boolean hasRows(String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT EXISTS (SELECT 1 FROM " + table + ")")) {
+            return resultSet.next() && resultSet.getBoolean(1);
+        }
+    }
+
+    private static Step sql(String sql) {
+        return new Step(sql, null, null);
+    }
+
+    /**
+     * A statement that deletes existing rows, whose row count is logged
+     * @param rows What the deleted rows are, for the log
+     */
+    private static Step removes(String rows, String sql) {
+        return new Step(sql, "removed", rows);
+    }
+
+    /**
+     * A statement that reassigns existing rows, such as reviews merged from one course into another, whose row
+     * count is logged
+     * @param rows What the moved rows are, for the log
+     */
+    private static Step moves(String rows, String sql) {
+        return new Step(sql, "moved", rows);
+    }
+
+    /**
+     * @param change What the statement does to existing data, or null if it leaves existing data as it is
+     * @param rows What the changed rows are
+     */
+    private record Step(String sql, String change, String rows) {
+    }
+
+    private record Migration(int version, String description, Step... steps) {
+        boolean removesData() {
+            return Arrays.stream(steps).anyMatch(step -> step.change() != null);
+        }
+    }
+}
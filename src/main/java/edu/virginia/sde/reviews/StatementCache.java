@@ -0,0 +1,92 @@
+package edu.virginia.sde.reviews;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of prepared statements for a single connection, keyed by SQL text.
+ * Statements handed out by the cache are owned by it and must not be closed by the caller.
+ */
+public class StatementCache {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_CAPACITY);
+    }
+
+    public StatementCache(Connection connection, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                evictions++;
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets the prepared statement for the given SQL, preparing it on the first use
+     * @param sql The SQL text of the statement
+     * @return A prepared statement owned by this cache
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hits++;
+            statement.clearParameters();
+            return statement;
+        }
+        misses++;
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Closes every cached statement and empties the cache
+     */
+    public synchronized void close() {
+        statements.values().forEach(StatementCache::closeQuietly);
+        statements.clear();
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package edu.virginia.sde.reviews;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A bounded cache of users, indexed by username and by ID, so repeated lookups of the same user during
+ * login and on review pages do not each query the Users table. Users are added on their first lookup and
+ * the least recently used user is evicted once the cache is full.
+ * <p>
+ * Cached User objects are never handed out; callers get copies, so changes to them do not reach the cache.
+ */
+public class UserCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final LinkedHashMap<String, User> byUsername;
+    private final Map<Integer, String> usernameById = new HashMap<>();
+    private long version;
+    private long hits;
+    private long misses;
+
+    public UserCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public UserCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        // Access order puts the least recently used user first
+        this.byUsername = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return A counter that changes on every change to a user or invalidation, read before querying a user to cache
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param username The username of the user
+     * @return A copy of the cached user, or an empty Optional if the user is not cached
+     */
+    public synchronized Optional<User> getByUsername(String username) {
+        User user = byUsername.get(username);
+        record(user != null);
+        return Optional.ofNullable(user).map(UserCache::copy);
+    }
+
+    /**
+     * @param userId The ID of the user
+     * @return A copy of the cached user, or an empty Optional if the user is not cached
+     */
+    public synchronized Optional<User> getById(int userId) {
+        String username = usernameById.get(userId);
+        return getByUsername(username);
+    }
+
+    /**
+     * Caches a user read from the database, unless a user was changed or the cache invalidated since the read,
+     * in which case the read may be stale and is not cached
+     * @param user The user as stored in the database
+     * @param expectedVersion The {@link #getVersion()} from before the user was read
+     */
+    public synchronized void load(User user, long expectedVersion) {
+        if (version == expectedVersion) {
+            index(user);
+        }
+    }
+
+    /**
+     * Caches a user that was just written to the database
+     * @param user The user as stored in the database
+     */
+    public synchronized void put(User user) {
+        version++;
+        index(user);
+    }
+
+    /**
+     * Removes a user from the cache, so the next lookup reads it from the database
+     * @param userId The ID of the user
+     */
+    public synchronized void remove(int userId) {
+        version++;
+        String username = usernameById.remove(userId);
+        if (username != null) {
+            byUsername.remove(username);
+        }
+    }
+
+    /**
+     * Drops every cached user
+     */
+    public synchronized void invalidate() {
+        version++;
+        byUsername.clear();
+        usernameById.clear();
+    }
+
+    public synchronized int size() {
+        return byUsername.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The fraction of lookups served from the cache, or 0 if nothing has been looked up yet
+     */
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private void index(User user) {
+        User previous = byUsername.put(user.getUsername(), copy(user));
+        if (previous != null && previous.getUserID() != user.getUserID()) {
+            usernameById.remove(previous.getUserID());
+        }
+        String previousUsername = usernameById.put(user.getUserID(), user.getUsername());
+        if (previousUsername != null && !previousUsername.equals(user.getUsername())) {
+            byUsername.remove(previousUsername);
+        }
+        if (byUsername.size() > capacity) {
+            Map.Entry<String, User> eldest = byUsername.entrySet().iterator().next();
+            usernameById.remove(eldest.getValue().getUserID());
+            byUsername.remove(eldest.getKey());
+        }
+    }
+
+    private void record(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    private static User copy(User user) {
+        User copy = new User(user.getUsername(), user.getPassword());
+        copy.setUserID(user.getUserID());
+        return copy;
+    }
+}
@@ -0,0 +1,109 @@
+package edu.virginia.sde.reviews;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CourseLeaderboardsTest {
+    private static final String[] SUBJECTS = {"CS", "MATH", "ECON"};
+
+    private final CourseLeaderboards leaderboards = new CourseLeaderboards(3.5, 4, 0);
+    private final Map<Integer, Ratings> reference = new HashMap<>();
+
+    @Test
+    public void courseFallingBelowTheKeptPlacesIsReplaced() {
+        int courses = CourseLeaderboards.CAPACITY + 50;
+        for (int id = 1; id <= courses; id++) {
+            // Higher IDs rate higher, so course `courses` starts first
+            update(id, "CS", 10, 10L * (1 + id % 5) + id / 10, id);
+        }
+        assertTopMatches();
+
+        // The best course drops to the bottom, so the course just outside the kept places must move up
+        update(courses, "CS", 1, 1, 0.001);
+        assertTopMatches();
+
+        // And a course from outside the kept places rises to the top
+        update(1, "CS", 50, 250, 1000);
+        assertTopMatches();
+    }
+
+    @Test
+    public void courseLosingEveryReviewOrChangingSubjectLeavesItsLeaderboards() {
+        for (int id = 1; id <= 20; id++) {
+            update(id, SUBJECTS[id % SUBJECTS.length], id, 3L * id, id);
+        }
+        assertTopMatches();
+        update(20, "CS", 0, 0, 0);
+        assertTopMatches();
+        update(19, "ECON", 19, 57, 19);
+        assertTopMatches();
+    }
+
+    @Test
+    public void randomUpdatesMatchABruteForceRanking() {
+        Random random = new Random(18);
+        for (int i = 0; i < 5_000; i++) {
+            int id = 1 + random.nextInt(300);
+            int count = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(30);
+            long sum = count == 0 ? 0 : count + random.nextInt(4 * count + 1);
+            update(id, SUBJECTS[random.nextInt(SUBJECTS.length)], count, sum, random.nextInt(100) / 10.0);
+            if (i % 100 == 0) {
+                assertTopMatches();
+            }
+        }
+        assertTopMatches();
+    }
+
+    private void update(int id, String subject, int count, long sum, double trendWeight) {
+        leaderboards.update(id, subject, count, sum, trendWeight);
+        if (count == 0) {
+            reference.remove(id);
+        } else {
+            reference.put(id, new Ratings(subject, count, sum, trendWeight));
+        }
+    }
+
+    private void assertTopMatches() {
+        List<String> subjects = new ArrayList<>(List.of(SUBJECTS));
+        subjects.add(null);
+        for (LeaderboardType type : LeaderboardType.values()) {
+            for (String subject : subjects) {
+                for (int limit : new int[]{10, CourseLeaderboards.CAPACITY, CourseLeaderboards.CAPACITY + 20}) {
+                    List<Integer> expected = bruteForceTop(type, subject, limit);
+                    List<Integer> actual = leaderboards.getTop(type, subject, limit).stream()
+                            .map(LeaderboardEntry::getCourseId).toList();
+                    assertEquals(expected, actual, type + " " + subject + " top " + limit);
+                }
+            }
+        }
+    }
+
+    private List<Integer> bruteForceTop(LeaderboardType type, String subject, int limit) {
+        return reference.entrySet().stream()
+                .filter(entry -> subject == null || subject.equals(entry.getValue().subject()))
+                .sorted(Comparator.<Map.Entry<Integer, Ratings>>comparingDouble(entry -> -score(type, entry.getValue()))
+                        .thenComparingInt(Map.Entry::getKey))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private double score(LeaderboardType type, Ratings ratings) {
+        return switch (type) {
+            case TOP_RATED -> leaderboards.getBayesianAverage(ratings.count(), ratings.sum());
+            case MOST_REVIEWED -> ratings.count();
+            case TRENDING -> ratings.trendWeight();
+        };
+    }
+
+    private record Ratings(String subject, int count, long sum, double trendWeight) {
+    }
+}
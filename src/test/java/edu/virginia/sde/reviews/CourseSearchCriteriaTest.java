@@ -0,0 +1,107 @@
+package edu.virginia.sde.reviews;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CourseSearchCriteriaTest {
+    private static final String[] SUBJECTS = {"CS", "MATH"};
+    private static final String TITLE_CHARACTERS = "abcAB \u00e9-+ ";
+
+    @Test
+    public void titleWordsMatchWordPrefixesIgnoringCaseAndAccents() {
+        Course course = new Course(1, "CS", 3140, "Software D\u00e9veloppement Essentials", null);
+        assertTrue(criteria(null, null, "soft dev").matches(course));
+        assertTrue(criteria(null, null, "D\u00c9VE ess").matches(course));
+        assertTrue(criteria(null, null, "essentials software").matches(course));
+        assertFalse(criteria(null, null, "ware").matches(course));
+        assertFalse(criteria(null, null, "software testing").matches(course));
+    }
+
+    @Test
+    public void titleWithoutWordsMatchesASubstring() {
+        Course course = new Course(1, "CS", 2100, "Data Structures & Algorithms", null);
+        assertTrue(criteria(null, null, "&").matches(course));
+        assertFalse(criteria(null, null, "+").matches(course));
+    }
+
+    @Test
+    public void subjectAndNumberMatchExactly() {
+        Course course = new Course(1, "CS", 2100, "Data Structures", null);
+        assertTrue(criteria("cs", 2100, "").matches(course));
+        assertFalse(criteria("C", null, "").matches(course));
+        assertFalse(criteria("CS", 210, "").matches(course));
+        assertTrue(criteria("", null, "").matches(course));
+    }
+
+    @Test
+    public void narrowingRequiresEveryPreviousFilter() {
+        CourseSearchCriteria previous = criteria("CS", null, "data");
+        assertTrue(criteria("CS", 2100, "data").isNarrowingOf(previous));
+        assertTrue(criteria("CS", null, "data str").isNarrowingOf(previous));
+        assertTrue(criteria("CS", null, "Datab").isNarrowingOf(previous));
+        assertFalse(criteria("", null, "data").isNarrowingOf(previous));
+        assertFalse(criteria("MATH", null, "data").isNarrowingOf(previous));
+        assertFalse(criteria("CS", null, "dat").isNarrowingOf(previous));
+        assertFalse(criteria("CS", null, "big data").isNarrowingOf(previous));
+        assertFalse(criteria("CS", null, "data").isNarrowingOf(criteria("CS", 2100, "")));
+    }
+
+    @Test
+    public void titlesWithoutWordsAreNeverNarrowed() {
+        assertFalse(criteria(null, null, "&&").isNarrowingOf(criteria(null, null, "&")));
+        assertFalse(criteria(null, null, "&a").isNarrowingOf(criteria(null, null, "&")));
+        assertTrue(criteria(null, null, "a&").isNarrowingOf(criteria(null, null, "a")));
+    }
+
+    @Test
+    public void narrowedCriteriaOnlyMatchCoursesThePreviousCriteriaMatch() {
+        Random random = new Random(22);
+        List<Course> courses = new ArrayList<>();
+        for (int id = 0; id < 300; id++) {
+            courses.add(new Course(id, SUBJECTS[random.nextInt(SUBJECTS.length)], 1000 + random.nextInt(3),
+                    randomText(random, 1 + random.nextInt(12)), null));
+        }
+        int narrowings = 0;
+        for (int i = 0; i < 5_000; i++) {
+            CourseSearchCriteria previous = randomCriteria(random, randomText(random, random.nextInt(4)));
+            String typedFurther = random.nextBoolean()
+                    ? previous.getTitle() + randomText(random, 1 + random.nextInt(3))
+                    : randomText(random, random.nextInt(5));
+            CourseSearchCriteria next = randomCriteria(random, typedFurther);
+            if (!next.isNarrowingOf(previous)) {
+                continue;
+            }
+            narrowings++;
+            for (Course course : courses) {
+                if (next.matches(course)) {
+                    assertTrue(previous.matches(course), next + " narrows " + previous + " but matches " + course.getTitle());
+                }
+            }
+        }
+        assertTrue(narrowings > 500, "only " + narrowings + " narrowings were checked");
+    }
+
+    private static CourseSearchCriteria criteria(String subject, Integer courseNumber, String title) {
+        return new CourseSearchCriteria(subject, courseNumber, title);
+    }
+
+    private static CourseSearchCriteria randomCriteria(Random random, String title) {
+        String subject = random.nextInt(3) == 0 ? SUBJECTS[random.nextInt(SUBJECTS.length)] : "";
+        Integer courseNumber = random.nextInt(3) == 0 ? 1000 + random.nextInt(3) : null;
+        return criteria(subject, courseNumber, title);
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append(TITLE_CHARACTERS.charAt(random.nextInt(TITLE_CHARACTERS.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package edu.virginia.sde.reviews;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndWithinAPrecisionStep() {
+        int last = LatencyHistogram.bucketIndex(LatencyHistogram.HIGHEST_TRACKABLE_NANOS);
+        assertEquals(LatencyHistogram.HIGHEST_TRACKABLE_NANOS, LatencyHistogram.highestValueInBucket(last));
+        long lowest = 0;
+        for (int index = 0; index <= last; index++) {
+            long highest = LatencyHistogram.highestValueInBucket(index);
+            assertTrue(highest >= lowest, "bucket " + index + " is empty");
+            assertEquals(index, LatencyHistogram.bucketIndex(lowest));
+            assertEquals(index, LatencyHistogram.bucketIndex(highest));
+            assertTrue(highest - lowest <= lowest / 64, "bucket " + index + " is too wide");
+            lowest = highest + 1;
+        }
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0.0, histogram.getMeanNanos(), 0);
+        assertEquals(0L, histogram.getMaxNanos());
+        assertEquals(0L, histogram.getValueAtPercentile(50));
+        assertEquals(0L, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void percentilesAreWithinAPrecisionStepOfTheExactValue() {
+        Random random = new Random(25);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[20_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform from 1 ns to about 1 s, so every range of buckets is used
+            values[i] = (long) Math.pow(10, random.nextDouble() * 9);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[]{0, 1, 25, 50, 90, 99, 99.9, 100}) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * values.length));
+            long exact = values[(int) rank - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported - exact <= exact / 64,
+                    "p" + percentile + " was " + reported + " but is exactly " + exact);
+        }
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+        assertEquals((long) values.length, histogram.getCount());
+    }
+
+    @Test
+    public void valuesAboveTheTrackableRangeKeepTheExactMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long huge = LatencyHistogram.HIGHEST_TRACKABLE_NANOS * 4;
+        histogram.record(1_000);
+        histogram.record(huge);
+        assertEquals(huge, histogram.getMaxNanos());
+        assertEquals(huge, histogram.getValueAtPercentile(100));
+        assertEquals(LatencyHistogram.highestValueInBucket(LatencyHistogram.bucketIndex(1_000)),
+                histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1L, histogram.getCount());
+        assertEquals(0L, histogram.getMaxNanos());
+        assertEquals(0L, histogram.getValueAtPercentile(100));
+    }
+}
@@ -0,0 +1,75 @@
+package edu.virginia.sde.reviews;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LongIntMapTest {
+
+    @Test
+    public void putReplacesAndRemoveReturnsTheValue() {
+        LongIntMap map = new LongIntMap(8);
+        map.put(42, 1);
+        map.put(42, 2);
+        assertEquals(2, map.get(42));
+        assertEquals(2, map.remove(42));
+        assertEquals(LongIntMap.MISSING, map.get(42));
+        assertEquals(LongIntMap.MISSING, map.remove(42));
+    }
+
+    @Test
+    public void removeKeepsCollidingNeighboursReachable() {
+        // A map for 8 keys has 16 slots and is never resized by the 5 keys below
+        int mask = 15;
+        List<Long> sameHome = new ArrayList<>();
+        long nextHome = -1;
+        for (long key = 0; sameHome.size() < 4 || nextHome < 0; key++) {
+            int slot = LongIntMap.slot(key, mask);
+            if (slot == 3 && sameHome.size() < 4) {
+                sameHome.add(key);
+            } else if (slot == 4 && nextHome < 0) {
+                nextHome = key;
+            }
+        }
+        for (int head = 0; head < sameHome.size(); head++) {
+            LongIntMap map = new LongIntMap(8);
+            // The key homed one slot later lands behind the run of colliding keys
+            for (int i = 0; i < sameHome.size(); i++) {
+                map.put(sameHome.get(i), i);
+            }
+            map.put(nextHome, 99);
+            assertEquals(head, map.remove(sameHome.get(head)));
+            for (int i = 0; i < sameHome.size(); i++) {
+                assertEquals(i == head ? LongIntMap.MISSING : i, map.get(sameHome.get(i)), "key " + i + " after removing " + head);
+            }
+            assertEquals(99, map.get(nextHome));
+        }
+    }
+
+    @Test
+    public void randomOperationsMatchAHashMap() {
+        Random random = new Random(16);
+        LongIntMap map = new LongIntMap(4);
+        Map<Long, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // A small key range keeps the table full of collisions and deletions
+            long key = random.nextInt(600) - 300;
+            if (random.nextInt(3) == 0) {
+                Integer expected = reference.remove(key);
+                assertEquals(expected == null ? LongIntMap.MISSING : expected, map.remove(key));
+            } else {
+                int value = random.nextInt(1000);
+                reference.put(key, value);
+                map.put(key, value);
+            }
+            long probe = random.nextInt(600) - 300;
+            assertEquals((int) reference.getOrDefault(probe, LongIntMap.MISSING), map.get(probe));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package edu.virginia.sde.reviews;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RatingColumnStoreTest {
+    private static final int COURSES = 6;
+
+    private final RatingColumnStore store = new RatingColumnStore();
+    // The reviews the store should hold, keyed by user then course
+    private final Map<Long, long[]> reference = new HashMap<>();
+
+    @Test
+    public void addEditAndRemove() {
+        put(1, 1, 5, 100);
+        put(2, 1, 3, 200);
+        put(1, 2, 4, 300);
+        assertMatchesReference();
+
+        // A second review from the same user replaces the first
+        put(1, 1, 1, 400);
+        assertEquals(3, store.size());
+        assertMatchesReference();
+
+        remove(2, 1);
+        assertMatchesReference();
+        remove(2, 1);
+        remove(9, 9);
+        assertMatchesReference();
+    }
+
+    @Test
+    public void removeTheLastRow() {
+        put(1, 1, 5, 100);
+        put(2, 2, 4, 200);
+        put(3, 1, 2, 300);
+        remove(3, 1);
+        assertMatchesReference();
+        put(4, 1, 3, 400);
+        assertMatchesReference();
+    }
+
+    @Test
+    public void removeTheHeadOfACourseList() {
+        // The newest row of a course heads its list; a later row of another course is the last row and is moved
+        put(1, 1, 5, 100);
+        put(2, 1, 4, 200);
+        put(3, 2, 3, 300);
+        put(4, 2, 2, 400);
+        remove(2, 1);
+        assertMatchesReference();
+        remove(4, 2);
+        assertMatchesReference();
+        remove(1, 1);
+        assertMatchesReference();
+    }
+
+    @Test
+    public void removeTheOnlyRowOfACourse() {
+        put(1, 1, 5, 100);
+        put(2, 2, 4, 200);
+        remove(1, 1);
+        assertMatchesReference();
+        put(1, 1, 3, 300);
+        assertMatchesReference();
+    }
+
+    @Test
+    public void rejectsRatingsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> store.put(1, 1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> store.put(1, 1, 6, 0));
+    }
+
+    @Test
+    public void randomOperationsMatchAReference() {
+        Random random = new Random(17);
+        for (int i = 0; i < 20_000; i++) {
+            int user = random.nextInt(40);
+            int course = random.nextInt(COURSES);
+            if (random.nextInt(3) == 0) {
+                remove(user, course);
+            } else {
+                put(user, course, 1 + random.nextInt(5), random.nextInt(1000));
+            }
+            if (i % 500 == 0) {
+                assertMatchesReference();
+            }
+        }
+        assertMatchesReference();
+    }
+
+    private void put(int user, int course, int rating, long time) {
+        store.put(user, course, rating, time);
+        reference.put(key(user, course), new long[]{course, rating, time});
+    }
+
+    private void remove(int user, int course) {
+        store.remove(user, course);
+        reference.remove(key(user, course));
+    }
+
+    private void assertMatchesReference() {
+        assertEquals(reference.size(), store.size(), "size");
+        for (int course = 0; course < COURSES; course++) {
+            int count = 0;
+            long sum = 0;
+            int[] histogram = new int[5];
+            int windowCount = 0;
+            long windowSum = 0;
+            for (long[] review : reference.values()) {
+                if (review[0] != course) {
+                    continue;
+                }
+                count++;
+                sum += review[1];
+                histogram[(int) review[1] - 1]++;
+                if (review[2] >= 250 && review[2] < 750) {
+                    windowCount++;
+                    windowSum += review[1];
+                }
+            }
+            String name = "course " + course;
+            assertEquals(count, store.getReviewCount(course), name);
+            assertEquals(count == 0 ? Double.NaN : (double) sum / count, store.getAverageRating(course), 1e-9, name);
+            assertArrayEquals(histogram, store.getHistogram(course, new int[5]), name);
+            assertEquals(windowCount, store.getReviewCount(course, 250, 750), name);
+            assertEquals(windowCount == 0 ? Double.NaN : (double) windowSum / windowCount,
+                    store.getAverageRating(course, 250, 750), 1e-9, name);
+        }
+    }
+
+    private static long key(int user, int course) {
+        return ((long) user << 32) | course;
+    }
+}